@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.lburgazzoli.etcd.v3.api.AuthGrpc;
+import com.github.lburgazzoli.etcd.v3.api.AuthenticateRequest;
+import com.github.lburgazzoli.etcd.v3.api.AuthenticateResponse;
+import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.github.lburgazzoli.etcd.v3.api.KeyValue;
+import com.github.lburgazzoli.etcd.v3.api.PutRequest;
+import com.github.lburgazzoli.etcd.v3.api.PutResponse;
+import com.github.lburgazzoli.etcd.v3.api.RangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.RangeResponse;
+import com.github.lburgazzoli.etcd.v3.api.ResponseHeader;
+import com.google.protobuf.ByteString;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * An in-process server answering KV and Auth calls with pre-built responses,
+ * so the benchmarks measure the client and the transport only.
+ */
+final class BenchmarkServer implements AutoCloseable {
+    private final String name;
+    private final Server server;
+
+    private BenchmarkServer(String name, Server server) {
+        this.name = name;
+        this.server = server;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void close() throws Exception {
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts a server answering every range request with the given number of
+     * key values, each holding a value of the given size.
+     */
+    public static BenchmarkServer start(int rangeSize, int valueSize) throws IOException {
+        final String name = "etcd-benchmark-" + UUID.randomUUID();
+        final Server server = InProcessServerBuilder.forName(name)
+            .addService(new KV(rangeSize, valueSize))
+            .addService(new Auth())
+            .directExecutor()
+            .build()
+            .start();
+
+        return new BenchmarkServer(name, server);
+    }
+
+    // **********************************
+    // Services
+    // **********************************
+
+    private static final class KV extends KVGrpc.KVImplBase {
+        private final AtomicLong revision;
+        private final RangeResponse range;
+
+        KV(int rangeSize, int valueSize) {
+            final ByteString value = ByteString.copyFrom(new byte[valueSize]);
+            final RangeResponse.Builder builder = RangeResponse.newBuilder()
+                .setHeader(ResponseHeader.newBuilder().setRevision(1))
+                .setCount(rangeSize);
+
+            for (int i = 0; i < rangeSize; i++) {
+                builder.addKvs(
+                    KeyValue.newBuilder()
+                        .setKey(ByteString.copyFromUtf8(String.format("key-%08d", i)))
+                        .setValue(value)
+                        .setCreateRevision(1)
+                        .setModRevision(1)
+                        .setVersion(1)
+                );
+            }
+
+            this.revision = new AtomicLong(1);
+            this.range = builder.build();
+        }
+
+        @Override
+        public void range(RangeRequest request, StreamObserver<RangeResponse> observer) {
+            observer.onNext(range);
+            observer.onCompleted();
+        }
+
+        @Override
+        public void put(PutRequest request, StreamObserver<PutResponse> observer) {
+            observer.onNext(
+                PutResponse.newBuilder()
+                    .setHeader(ResponseHeader.newBuilder().setRevision(revision.incrementAndGet()))
+                    .build()
+            );
+            observer.onCompleted();
+        }
+    }
+
+    private static final class Auth extends AuthGrpc.AuthImplBase {
+        @Override
+        public void authenticate(AuthenticateRequest request, StreamObserver<AuthenticateResponse> observer) {
+            observer.onNext(
+                AuthenticateResponse.newBuilder()
+                    .setToken(request.getName() + "." + UUID.randomUUID())
+                    .build()
+            );
+            observer.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trips of single key put and get requests through the {@link Etcd}
+ * facade, with and without the token interceptor.
+ *
+ * Use -t to measure how the client scales with the number of caller threads
+ * and -prof gc for the allocation rate, i.e.:
+ *
+ *     mvn -Pjmh test-compile exec:exec -Djmh.args="KVBenchmark -t 8 -prof gc"
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KVBenchmark {
+    @Param({ "false", "true" })
+    public boolean auth;
+
+    @Param({ "16", "1024" })
+    public int valueSize;
+
+    private BenchmarkServer server;
+    private Etcd etcd;
+    private String value;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = BenchmarkServer.start(1, valueSize);
+
+        Etcd.Builder builder = Etcd.builder().inProcessServer(server.getName());
+        if (auth) {
+            builder.user("root").password("root");
+        }
+
+        etcd = builder.build();
+        value = new String(new char[valueSize]).replace('\0', 'x');
+
+        // open the channel and fetch the token, if any, ahead of the measurement
+        etcd.get("key").get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        etcd.close();
+        server.close();
+    }
+
+    @Benchmark
+    public PutResponse put() {
+        return etcd.put("key", value).send().join();
+    }
+
+    @Benchmark
+    public GetResponse get() {
+        return etcd.get("key").send().join();
+    }
+}
@@ -0,0 +1,359 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * A load generator in the spirit of etcd's benchmark tool, driving put, get,
+ * range, txn and watch workloads through the {@link Etcd} facade and
+ * reporting throughput and latency percentiles.
+ *
+ * Every client runs a closed loop: it sends a request, waits for the response
+ * and sends the next one. When a rate is set latencies are measured from the
+ * time the request was due to be sent, so a slow server is not hidden by the
+ * clients backing off.
+ *
+ *     mvn -Pjmh test-compile exec:exec@loadgen -Dloadgen.args="--workload put --clients 64 --connections 4"
+ */
+public final class LoadGenerator {
+    enum Workload {
+        PUT, GET, RANGE, TXN, WATCH
+    }
+
+    static final class Options {
+        @Parameter(names = "--endpoints", description = "Comma separated etcd endpoints")
+        List<String> endpoints = new ArrayList<>(Arrays.asList("localhost:2379"));
+
+        @Parameter(names = "--in-process", description = "Run against an in-process stand-in instead of the endpoints")
+        boolean inProcess;
+
+        @Parameter(names = "--in-process-latency", description = "Latency of the in-process stand-in, in microseconds")
+        long inProcessLatency;
+
+        @Parameter(names = "--user", description = "User name")
+        String user;
+
+        @Parameter(names = "--password", description = "User password")
+        String password;
+
+        @Parameter(names = "--workload", description = "One of put, get, range, txn, watch")
+        String workload = "put";
+
+        @Parameter(names = "--prefix", description = "Prefix of the keys")
+        String prefix = "loadgen/";
+
+        @Parameter(names = "--key-space", description = "Number of distinct keys")
+        int keySpace = 10000;
+
+        @Parameter(names = "--value-size", description = "Size of the values, in bytes")
+        int valueSize = 256;
+
+        @Parameter(names = "--range-size", description = "Number of keys selected by each range request")
+        int rangeSize = 100;
+
+        @Parameter(names = "--clients", description = "Number of concurrent clients")
+        int clients = 16;
+
+        @Parameter(names = "--connections", description = "Number of Etcd instances, hence connections, the clients are spread over")
+        int connections = 1;
+
+        @Parameter(names = "--watchers", description = "Number of watchers for the watch workload")
+        int watchers = 10;
+
+        @Parameter(names = "--rate", description = "Max requests per second, 0 for no limit")
+        int rate;
+
+        @Parameter(names = "--total", description = "Total number of requests")
+        long total = 100000;
+
+        @Parameter(names = "--histogram-file", description = "File to write the full latency distribution to")
+        String histogramFile;
+
+        @Parameter(names = "--help", help = true)
+        boolean help;
+    }
+
+    private final Options options;
+    private final Workload workload;
+    private final String value;
+    private final Recorder recorder;
+    private final LongAdder errors;
+    private final AtomicLong remaining;
+    private final AtomicLong nextSlot;
+    private final long interval;
+
+    private LoadGenerator(Options options) {
+        this.options = options;
+        this.workload = Workload.valueOf(options.workload.toUpperCase());
+        this.value = new String(new char[options.valueSize]).replace('\0', 'x');
+        this.recorder = new Recorder(3);
+        this.errors = new LongAdder();
+        this.remaining = new AtomicLong(options.total);
+        this.nextSlot = new AtomicLong(System.nanoTime());
+        this.interval = options.rate > 0 ? TimeUnit.SECONDS.toNanos(1) / options.rate : 0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Options options = new Options();
+        final JCommander commander = JCommander.newBuilder().addObject(options).programName("loadgen").build();
+
+        commander.parse(args);
+
+        if (options.help) {
+            commander.usage();
+            return;
+        }
+
+        InProcessEtcd server = null;
+
+        try {
+            if (options.inProcess) {
+                server = new InProcessEtcd("loadgen");
+                server.latency(options.inProcessLatency, 0, TimeUnit.MICROSECONDS);
+                if (options.user != null) {
+                    server.user(options.user, options.password);
+                }
+
+                server.start();
+            }
+
+            new LoadGenerator(options).run(server);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+
+        System.exit(0);
+    }
+
+    // **********************************
+    // Run
+    // **********************************
+
+    private void run(InProcessEtcd server) throws Exception {
+        final List<Etcd> connections = new ArrayList<>();
+
+        for (int i = 0; i < options.connections; i++) {
+            final Etcd.Builder builder = Etcd.builder().user(options.user).password(options.password);
+
+            if (server != null) {
+                builder.inProcessServer(server.getName());
+            } else {
+                builder.endpoints(options.endpoints);
+            }
+
+            connections.add(builder.build());
+        }
+
+        try {
+            if (workload == Workload.GET || workload == Workload.RANGE) {
+                populate(connections.get(0));
+            }
+
+            final List<Watcher> watchers = new ArrayList<>();
+            if (workload == Workload.WATCH) {
+                for (int i = 0; i < options.watchers; i++) {
+                    watchers.add(
+                        connections.get(i % connections.size()).watch(options.prefix).prefix().listen(this::onWatch)
+                    );
+                }
+            }
+
+            final CountDownLatch done = new CountDownLatch(options.clients);
+            final Histogram total = new Histogram(3);
+            final long start = System.nanoTime();
+
+            nextSlot.set(start);
+
+            for (int i = 0; i < options.clients; i++) {
+                final Etcd etcd = connections.get(i % connections.size());
+                final Thread thread = new Thread(() -> client(etcd, done), "loadgen-" + i);
+
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            while (!done.await(1, TimeUnit.SECONDS)) {
+                final Histogram interval = recorder.getIntervalHistogram();
+                total.add(interval);
+
+                System.out.printf("%8d ops/s  p50 %8.1f us  p99 %8.1f us  errors %d%n",
+                    interval.getTotalCount(),
+                    interval.getValueAtPercentile(50) / 1000.0,
+                    interval.getValueAtPercentile(99) / 1000.0,
+                    errors.sum());
+            }
+
+            final long elapsed = System.nanoTime() - start;
+
+            for (Watcher watcher : watchers) {
+                watcher.close();
+            }
+
+            total.add(recorder.getIntervalHistogram());
+            report(total, elapsed);
+        } finally {
+            for (Etcd etcd : connections) {
+                etcd.close();
+            }
+        }
+    }
+
+    private void client(Etcd etcd, CountDownLatch done) {
+        try {
+            while (remaining.getAndDecrement() > 0) {
+                final long due = acquire();
+
+                try {
+                    execute(etcd);
+                } catch (Exception e) {
+                    errors.increment();
+                    continue;
+                }
+
+                if (workload != Workload.WATCH) {
+                    recorder.recordValue(Math.max(0, System.nanoTime() - due));
+                }
+            }
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private void execute(Etcd etcd) throws Exception {
+        final int index = ThreadLocalRandom.current().nextInt(options.keySpace);
+
+        switch (workload) {
+        case PUT:
+            etcd.put(key(index), value).send().get();
+            break;
+        case GET:
+            etcd.get(key(index)).send().get();
+            break;
+        case RANGE:
+            final int from = Math.min(index, Math.max(0, options.keySpace - options.rangeSize));
+            etcd.scan(key(from))
+                .rangeEnd(key(from + options.rangeSize))
+                .pageSize(options.rangeSize)
+                .stream()
+                .count();
+            break;
+        case TXN:
+            etcd.txn()
+                .when(Compare.version(key(index)).greater(-1L))
+                .then(Op.put(key(index), value))
+                .send()
+                .get();
+            break;
+        case WATCH:
+            // the latency is measured from the put to the delivery of the event
+            etcd.put(key(index), System.nanoTime() + ":" + value).send().get();
+            break;
+        default:
+            throw new IllegalStateException();
+        }
+    }
+
+    private void onWatch(WatchResponse response) {
+        final long now = System.nanoTime();
+
+        for (Event event : response.getEvents()) {
+            final String payload = event.getKeyValue().getValue().toString();
+            final int separator = payload.indexOf(':');
+
+            if (separator > 0) {
+                recorder.recordValue(Math.max(0, now - Long.parseLong(payload.substring(0, separator))));
+            }
+        }
+    }
+
+    /**
+     * Waits for the next slot when a rate is set.
+     *
+     * @return the time the request is due
+     */
+    private long acquire() {
+        if (interval == 0) {
+            return System.nanoTime();
+        }
+
+        final long slot = nextSlot.getAndAdd(interval);
+
+        long wait;
+        while ((wait = slot - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+
+        return slot;
+    }
+
+    private void populate(Etcd etcd) throws Exception {
+        for (int i = 0; i < options.keySpace; i++) {
+            etcd.put(key(i), value).send().get();
+        }
+    }
+
+    private String key(int index) {
+        return String.format("%s%08d", options.prefix, index);
+    }
+
+    // **********************************
+    // Report
+    // **********************************
+
+    private void report(Histogram histogram, long elapsed) throws Exception {
+        final double seconds = elapsed / 1e9;
+
+        System.out.println();
+        System.out.printf("Workload      %s, %d clients, %d connections%n", workload, options.clients, options.connections);
+        System.out.printf("Requests      %d in %.2f s, %d errors%n", histogram.getTotalCount(), seconds, errors.sum());
+        System.out.printf("Throughput    %.1f ops/s%n", histogram.getTotalCount() / seconds);
+        System.out.printf("Latency (us)  min %.1f, mean %.1f, max %.1f%n",
+            histogram.getMinValue() / 1000.0,
+            histogram.getMean() / 1000.0,
+            histogram.getMaxValue() / 1000.0);
+        System.out.printf("              p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f%n",
+            histogram.getValueAtPercentile(50) / 1000.0,
+            histogram.getValueAtPercentile(90) / 1000.0,
+            histogram.getValueAtPercentile(99) / 1000.0,
+            histogram.getValueAtPercentile(99.9) / 1000.0);
+
+        if (options.histogramFile != null) {
+            try (PrintStream out = new PrintStream(new FileOutputStream(options.histogramFile))) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.github.lburgazzoli.etcd.v3.api.RangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.RangeResponse;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Range requests returning a growing number of key values, measured end to
+ * end and, to isolate the client side decoding, over an already received
+ * response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RangeBenchmark {
+    @Param({ "1", "100", "1000" })
+    public int rangeSize;
+
+    @Param({ "128" })
+    public int valueSize;
+
+    private BenchmarkServer server;
+    private Etcd etcd;
+    private RangeResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = BenchmarkServer.start(rangeSize, valueSize);
+        etcd = Etcd.builder().inProcessServer(server.getName()).build();
+
+        // keep a received response to measure decoding without the rpc
+        final ManagedChannel channel = InProcessChannelBuilder.forName(server.getName()).build();
+        try {
+            response = KVGrpc.newBlockingStub(channel).range(RangeRequest.getDefaultInstance());
+        } finally {
+            channel.shutdownNow();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        etcd.close();
+        server.close();
+    }
+
+    @Benchmark
+    public void range(Blackhole blackhole) {
+        final GetResponse get = etcd.get("key").send().join();
+
+        for (int i = 0; i < get.size(); i++) {
+            blackhole.consume(get.valueAt(i));
+        }
+    }
+
+    @Benchmark
+    public void decodeKvs(Blackhole blackhole) {
+        for (KeyValue kv : new GetResponse(response).getKvs()) {
+            blackhole.consume(kv.getKey());
+            blackhole.consume(kv.getValue());
+        }
+    }
+
+    @Benchmark
+    public void decodeCursor(Blackhole blackhole) {
+        final GetResponse.Cursor cursor = new GetResponse(response).cursor();
+
+        while (cursor.next()) {
+            blackhole.consume(cursor.key());
+            blackhole.consume(cursor.value());
+        }
+    }
+}
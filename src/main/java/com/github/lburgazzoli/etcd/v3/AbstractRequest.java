@@ -17,20 +17,56 @@
 package com.github.lburgazzoli.etcd.v3;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+import com.google.protobuf.ByteString;
 import io.grpc.stub.AbstractStub;
 
 
 abstract class AbstractRequest<S extends AbstractStub<S>, R extends Response> implements Request<R>  {
     private final Stub<S> stub;
+    private long deadline;
 
     protected AbstractRequest(Stub<S> stub) {
         this.stub = stub;
     }
 
+    /**
+     * Fails the request with DEADLINE_EXCEEDED if no response arrives within
+     * the given timeout, overrides the client default deadline.
+     */
+    public AbstractRequest<S, R> deadline(long timeout, TimeUnit unit) {
+        this.deadline = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * @return the deadline of the request, in nanoseconds, 0 to use the client
+     *         default one
+     */
+    protected long timeout() {
+        return deadline;
+    }
+
     @Override
     public CompletableFuture<R> send() {
-        return stub.execute(this::execute);
+        return stub.execute(this::execute, deadline, isIdempotent(), key());
+    }
+
+    /**
+     * @return true if the request can be retried without changing its outcome,
+     *         only idempotent requests are retried on transient failures
+     */
+    protected boolean isIdempotent() {
+        return false;
+    }
+
+    /**
+     * @return the key the request is about, if any, requests about the same
+     *         key are kept in order when calls are striped by key
+     */
+    protected ByteString key() {
+        return null;
     }
 
     protected abstract void execute(S stub, CompletableFuture<R> future);
@@ -35,7 +35,7 @@ class AbstractResponse<R> implements Response {
     // *****************************************
 
     @Override
-    public final Header getHeader() {
+    public final Response.Header getHeader() {
         return header;
     }
 
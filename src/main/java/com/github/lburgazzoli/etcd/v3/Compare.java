@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.function.BiConsumer;
+
+import com.github.lburgazzoli.etcd.v3.api.Compare.CompareResult;
+import com.github.lburgazzoli.etcd.v3.api.Compare.CompareTarget;
+import com.github.lburgazzoli.etcd.v3.util.ByteStrings;
+import com.google.protobuf.ByteString;
+
+/**
+ * A comparison evaluated by a {@link TxnRequest}, i.e.
+ *
+ * <pre>
+ *     Compare.version("key").equal(0L)
+ *     Compare.value("key").notEqual("value")
+ * </pre>
+ */
+public final class Compare {
+    private final com.github.lburgazzoli.etcd.v3.api.Compare compare;
+
+    private Compare(com.github.lburgazzoli.etcd.v3.api.Compare compare) {
+        this.compare = compare;
+    }
+
+    com.github.lburgazzoli.etcd.v3.api.Compare toCompare() {
+        return compare;
+    }
+
+    @Override
+    public String toString() {
+        return compare.toString();
+    }
+
+    // **********************************
+    // Targets
+    // **********************************
+
+    public static Target<Long> version(String key) {
+        return new Target<>(key, CompareTarget.VERSION, com.github.lburgazzoli.etcd.v3.api.Compare.Builder::setVersion);
+    }
+
+    public static Target<Long> createRevision(String key) {
+        return new Target<>(key, CompareTarget.CREATE, com.github.lburgazzoli.etcd.v3.api.Compare.Builder::setCreateRevision);
+    }
+
+    public static Target<Long> modRevision(String key) {
+        return new Target<>(key, CompareTarget.MOD, com.github.lburgazzoli.etcd.v3.api.Compare.Builder::setModRevision);
+    }
+
+    public static Target<String> value(String key) {
+        return new Target<>(key, CompareTarget.VALUE, (b, v) -> b.setValue(ByteString.copyFromUtf8(v)));
+    }
+
+    public static Target<Long> lease(String key) {
+        return new Target<>(key, CompareTarget.LEASE, com.github.lburgazzoli.etcd.v3.api.Compare.Builder::setLease);
+    }
+
+    /**
+     * The key-value field to compare, the comparison applies to a single key
+     * unless the target is extended to a range with {@link #rangeEnd(String)}
+     * or {@link #prefix()}.
+     */
+    public static final class Target<T> {
+        private final com.github.lburgazzoli.etcd.v3.api.Compare.Builder compare;
+        private final BiConsumer<com.github.lburgazzoli.etcd.v3.api.Compare.Builder, T> setter;
+
+        private Target(String key, CompareTarget target, BiConsumer<com.github.lburgazzoli.etcd.v3.api.Compare.Builder, T> setter) {
+            this.compare = com.github.lburgazzoli.etcd.v3.api.Compare.newBuilder()
+                .setKey(ByteString.copyFromUtf8(key))
+                .setTarget(target);
+            this.setter = setter;
+        }
+
+        public Target<T> rangeEnd(String rangeEnd) {
+            compare.setRangeEnd(ByteString.copyFromUtf8(rangeEnd));
+            return this;
+        }
+
+        public Target<T> prefix() {
+            compare.setRangeEnd(ByteStrings.prefixEnd(compare.getKey()));
+            return this;
+        }
+
+        public Compare equal(T value) {
+            return build(CompareResult.EQUAL, value);
+        }
+
+        public Compare notEqual(T value) {
+            return build(CompareResult.NOT_EQUAL, value);
+        }
+
+        public Compare greater(T value) {
+            return build(CompareResult.GREATER, value);
+        }
+
+        public Compare less(T value) {
+            return build(CompareResult.LESS, value);
+        }
+
+        private Compare build(CompareResult result, T value) {
+            com.github.lburgazzoli.etcd.v3.api.Compare.Builder builder = compare.clone().setResult(result);
+            setter.accept(builder, value);
+
+            return new Compare(builder.build());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps the executor completions are handed off to, to track how many of them
+ * are waiting for a thread.
+ */
+final class CompletionExecutor implements Executor {
+    private final Executor delegate;
+    private final EtcdMetrics metrics;
+    private final AtomicLong queueDepth;
+    private final LongAdder executed;
+
+    CompletionExecutor(Executor delegate, EtcdMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.queueDepth = new AtomicLong();
+        this.executed = new LongAdder();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        final long queued = metrics != null ? System.nanoTime() : 0;
+
+        queueDepth.incrementAndGet();
+
+        try {
+            delegate.execute(() -> {
+                queueDepth.decrementAndGet();
+                executed.increment();
+
+                if (metrics != null) {
+                    metrics.completionQueued(System.nanoTime() - queued);
+                }
+
+                command.run();
+            });
+        } catch (RuntimeException e) {
+            queueDepth.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of completions submitted but not yet started
+     */
+    long getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return the number of completions started so far
+     */
+    long getExecuted() {
+        return executed.sum();
+    }
+}
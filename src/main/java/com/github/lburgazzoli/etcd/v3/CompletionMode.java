@@ -0,0 +1,38 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+/**
+ * Defines the thread the futures returned by {@link Request#send()} are
+ * completed on.
+ */
+public enum CompletionMode {
+    /**
+     * Complete on the gRPC/Vert.x thread that received the response, callbacks
+     * must not block.
+     */
+    DIRECT,
+    /**
+     * Complete on the Vert.x context the request has been sent from, or as
+     * {@link #DIRECT} if the request has not been sent from a Vert.x context.
+     */
+    CONTEXT,
+    /**
+     * Complete on the completion executor.
+     */
+    EXECUTOR
+}
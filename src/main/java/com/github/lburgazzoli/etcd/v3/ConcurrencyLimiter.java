@@ -0,0 +1,306 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.api.AlarmMember;
+import com.github.lburgazzoli.etcd.v3.api.AlarmRequest;
+import com.github.lburgazzoli.etcd.v3.api.AlarmType;
+import com.github.lburgazzoli.etcd.v3.api.MaintenanceGrpc;
+import com.github.lburgazzoli.etcd.v3.api.StatusRequest;
+import io.grpc.Channel;
+import io.grpc.Status;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounds the number of concurrent calls of a client with an AIMD limit: the
+ * limit grows by one every time a full window of calls completes within the
+ * latency target and shrinks multiplicatively when a call is slower than the
+ * target or is rejected by an overloaded server, at most once per window so a
+ * burst of slow calls counts as a single congestion signal. Calls above the limit wait
+ * in a bounded queue and are rejected with a {@link RejectedExecutionException}
+ * once the queue is full.
+ *
+ * The storage of the cluster is monitored too: the limit is capped as the
+ * backend database approaches its quota and is dropped to the minimum while
+ * a NOSPACE alarm is raised, so writes are not piled on a cluster that can only
+ * reject them.
+ */
+final class ConcurrencyLimiter implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double PRESSURE_THRESHOLD = 0.8;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueued;
+    private final long latencyTarget;
+    private final Deque<Runnable> queue;
+    private double limit;
+    private int ceiling;
+    private int inflight;
+    private int pending;
+    private boolean nospace;
+    private long rejected;
+    private Vertx vertx;
+    private long timer;
+
+    /**
+     * @param latencyTarget the latency, in nanoseconds, above which the limit
+     *                      is decreased
+     */
+    ConcurrencyLimiter(int initialLimit, int maxLimit, int maxQueued, long latencyTarget) {
+        this.minLimit = 1;
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.maxQueued = maxQueued;
+        this.latencyTarget = latencyTarget;
+        this.queue = new ArrayDeque<>();
+        this.limit = Math.max(minLimit, Math.min(initialLimit, this.maxLimit));
+        this.ceiling = this.maxLimit;
+        this.timer = -1;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+    }
+
+    /**
+     * @return the current limit
+     */
+    synchronized int limit() {
+        return (int)limit;
+    }
+
+    /**
+     * @return the number of calls in flight
+     */
+    synchronized int inflight() {
+        return inflight;
+    }
+
+    /**
+     * @return the number of calls waiting for a permit
+     */
+    synchronized int queued() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of calls rejected because the queue was full
+     */
+    synchronized long rejected() {
+        return rejected;
+    }
+
+    // **********************************
+    // Permits
+    // **********************************
+
+    /**
+     * Runs the given task as soon as a permit is available, the task is
+     * expected to call {@link #release(long, Throwable)} once the call it
+     * starts has completed.
+     *
+     * @throws RejectedExecutionException if the limit is reached and the
+     *         queue is full
+     */
+    void acquire(Runnable task) {
+        synchronized (this) {
+            if (inflight < (int)limit) {
+                inflight++;
+            } else if (queue.size() < maxQueued) {
+                queue.add(task);
+                return;
+            } else {
+                rejected++;
+                throw new RejectedExecutionException(
+                    "Too many concurrent requests (limit: " + (int)limit + ", queued: " + queue.size() + ")");
+            }
+        }
+
+        task.run();
+    }
+
+    /**
+     * @param latency the latency of the call, in nanoseconds
+     * @param throwable the failure of the call, if any
+     */
+    void release(long latency, Throwable throwable) {
+        final List<Runnable> ready = new ArrayList<>();
+
+        synchronized (this) {
+            inflight--;
+
+            if (isNoSpace(throwable)) {
+                nospace = true;
+                limit = minLimit;
+            } else if (isOverload(throwable) || latency > latencyTarget) {
+                // the calls in flight when the limit has been decreased
+                // reflect the same congestion, so they are not counted again
+                if (pending > 0) {
+                    pending--;
+                } else {
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                    pending = inflight;
+                }
+            } else if (pending > 0) {
+                pending--;
+            } else if (throwable == null && inflight + 1 >= (int)limit) {
+                // grow only if the limit is actually in use
+                limit = Math.min(nospace ? minLimit : ceiling, limit + 1.0 / limit);
+            }
+
+            drain(ready);
+        }
+
+        for (Runnable task : ready) {
+            task.run();
+        }
+    }
+
+    /**
+     * Removes a task from the queue, i.e. if its call has been cancelled while
+     * waiting for a permit, so it does not hold a slot of the queue.
+     *
+     * @return true if the task was queued
+     */
+    synchronized boolean cancel(Runnable task) {
+        return queue.remove(task);
+    }
+
+    /**
+     * Releases a permit without a call having been made, i.e. if the call has
+     * been cancelled while waiting in the queue.
+     */
+    void release() {
+        final List<Runnable> ready = new ArrayList<>();
+
+        synchronized (this) {
+            inflight--;
+            drain(ready);
+        }
+
+        for (Runnable task : ready) {
+            task.run();
+        }
+    }
+
+    private void drain(List<Runnable> ready) {
+        while (inflight < (int)limit && !queue.isEmpty()) {
+            inflight++;
+            ready.add(queue.poll());
+        }
+    }
+
+    // **********************************
+    // Storage
+    // **********************************
+
+    /**
+     * Polls the status and the alarms of the cluster at the given interval.
+     *
+     * @param quota the backend quota, in bytes, of the members
+     * @param interval the polling interval, in milliseconds
+     */
+    synchronized void monitor(Vertx vertx, Channel channel, long quota, long interval) {
+        final MaintenanceGrpc.MaintenanceVertxStub stub = MaintenanceGrpc.newVertxStub(channel);
+
+        this.vertx = vertx;
+        this.timer = vertx.setPeriodic(interval, id -> poll(stub, quota, interval));
+    }
+
+    private void poll(MaintenanceGrpc.MaintenanceVertxStub stub, long quota, long interval) {
+        stub.withDeadlineAfter(interval, TimeUnit.MILLISECONDS).status(StatusRequest.getDefaultInstance(), h -> {
+            if (h.succeeded()) {
+                onDbSize((double)h.result().getDbSize() / quota);
+            } else {
+                LOGGER.debug("Unable to get the status of the cluster", h.cause());
+            }
+        });
+
+        stub.withDeadlineAfter(interval, TimeUnit.MILLISECONDS).alarm(AlarmRequest.newBuilder().setAction(AlarmRequest.AlarmAction.GET).build(), h -> {
+            if (h.succeeded()) {
+                boolean raised = false;
+                for (AlarmMember alarm : h.result().getAlarmsList()) {
+                    raised |= alarm.getAlarm() == AlarmType.NOSPACE;
+                }
+
+                onNoSpace(raised);
+            } else {
+                LOGGER.debug("Unable to get the alarms of the cluster", h.cause());
+            }
+        });
+    }
+
+    synchronized void onDbSize(double usage) {
+        // the ceiling goes linearly from the max limit, at the pressure
+        // threshold, down to the min one when the quota is reached
+        final double headroom = Math.max(0, Math.min(1, (1 - usage) / (1 - PRESSURE_THRESHOLD)));
+
+        ceiling = Math.max(minLimit, (int)(maxLimit * headroom));
+        limit = Math.min(limit, nospace ? minLimit : ceiling);
+    }
+
+    synchronized void onNoSpace(boolean raised) {
+        if (raised && !nospace) {
+            LOGGER.warn("NOSPACE alarm raised, limiting concurrency to {}", minLimit);
+        }
+
+        nospace = raised;
+
+        if (raised) {
+            limit = minLimit;
+        }
+    }
+
+    private static boolean isNoSpace(Throwable throwable) {
+        final Status status = throwable != null ? Status.fromThrowable(throwable) : null;
+        final String description = status != null ? status.getDescription() : null;
+
+        return status != null
+            && status.getCode() == Status.Code.RESOURCE_EXHAUSTED
+            && description != null
+            && description.contains("database space exceeded");
+    }
+
+    private static boolean isOverload(Throwable throwable) {
+        if (throwable == null) {
+            return false;
+        }
+
+        switch (Status.fromThrowable(throwable).getCode()) {
+        case RESOURCE_EXHAUSTED:
+        case UNAVAILABLE:
+        case DEADLINE_EXCEEDED:
+            return true;
+        default:
+            return false;
+        }
+    }
+}
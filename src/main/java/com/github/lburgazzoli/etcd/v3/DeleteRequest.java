@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.api.DeleteRangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.google.protobuf.ByteString;
+
+public final class DeleteRequest extends AbstractRequest<KVGrpc.KVVertxStub, DeleteResponse> {
+    private final ByteString key;
+    private final WriteBatcher batcher;
+
+    DeleteRequest(Stub<KVGrpc.KVVertxStub> stub, ByteString key, WriteBatcher batcher) {
+        super(stub);
+
+        this.key = key;
+        this.batcher = batcher;
+    }
+
+    @Override
+    public DeleteRequest deadline(long timeout, TimeUnit unit) {
+        super.deadline(timeout, unit);
+        return this;
+    }
+
+    @Override
+    public CompletableFuture<DeleteResponse> send() {
+        if (batcher != null) {
+            return batcher.delete(request(), timeout());
+        }
+
+        return super.send();
+    }
+
+    @Override
+    protected ByteString key() {
+        return key;
+    }
+
+    @Override
+    protected void execute(KVGrpc.KVVertxStub stub, CompletableFuture<DeleteResponse> future) {
+        stub.deleteRange(request(), h -> {
+            if (h.succeeded()) {
+                future.complete(new DeleteResponse(h.result()));
+            } else {
+                future.completeExceptionally(h.cause());
+            }
+        });
+    }
+
+    private DeleteRangeRequest request() {
+        return DeleteRangeRequest.newBuilder()
+            .setKey(key)
+            .build();
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.github.lburgazzoli.etcd.v3.api.ResponseHeader;
+
+public final class DeleteResponse extends AbstractResponse<com.github.lburgazzoli.etcd.v3.api.DeleteRangeResponse> {
+
+    public DeleteResponse(com.github.lburgazzoli.etcd.v3.api.DeleteRangeResponse response) {
+        super(response, response.getHeader());
+    }
+
+    DeleteResponse(com.github.lburgazzoli.etcd.v3.api.DeleteRangeResponse response, ResponseHeader header) {
+        super(response, header);
+    }
+
+    // ***********************************************
+    // Properties
+    // ***********************************************
+
+    public long getDeleted() {
+        return response().getDeleted();
+    }
+
+    public List<KeyValue> getPrevKvs() {
+        return response().getPrevKvsList().stream()
+            .map(KeyValue::new)
+            .collect(Collectors.toList());
+    }
+}
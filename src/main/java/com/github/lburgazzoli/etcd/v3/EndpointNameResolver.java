@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the endpoints of the etcd cluster members.
+ *
+ * Endpoints are in the form [scheme://]host[:port], with the
+ * {@link EtcdConstants#DNS_SRV_RESOLVER} resolver every endpoint is a domain
+ * whose _etcd-client(-ssl)._tcp SRV records list the members. Host names are
+ * resolved again every time the channel asks for a refresh, i.e. after a
+ * member becomes unreachable. Lookups block, so they run on a daemon thread
+ * owned by the resolver.
+ *
+ * The authority of the channel is the one of the first endpoint, or the SRV
+ * domain, TLS checks the host name of every member against it so members with
+ * different host names are given a resolver, and a channel, each.
+ */
+final class EndpointNameResolver extends NameResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EndpointNameResolver.class);
+
+    private final String resolver;
+    private final List<String> endpoints;
+    private final boolean ssl;
+    private final SynchronizationContext syncContext;
+    private ExecutorService executor;
+    private Listener2 listener;
+    private boolean resolving;
+    private boolean shutdown;
+
+    EndpointNameResolver(String resolver, List<String> endpoints, boolean ssl, SynchronizationContext syncContext) {
+        this.resolver = resolver;
+        this.endpoints = endpoints;
+        this.ssl = ssl;
+        this.syncContext = syncContext;
+    }
+
+    @Override
+    public String getServiceAuthority() {
+        return EtcdConstants.DNS_SRV_RESOLVER.equals(resolver)
+            ? endpoints.get(0)
+            : authority(endpoints.get(0));
+    }
+
+    @Override
+    public void start(Listener2 listener) {
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "etcd-name-resolver");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        resolve();
+    }
+
+    @Override
+    public void refresh() {
+        resolve();
+    }
+
+    @Override
+    public void shutdown() {
+        if (shutdown) {
+            return;
+        }
+
+        shutdown = true;
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    // **********************************
+    // Resolution
+    // **********************************
+
+    private void resolve() {
+        if (resolving || shutdown) {
+            return;
+        }
+
+        resolving = true;
+
+        CompletableFuture.supplyAsync(this::lookup, executor).whenComplete((addresses, throwable) -> syncContext.execute(() -> {
+            resolving = false;
+
+            if (shutdown) {
+                return;
+            }
+
+            if (throwable != null) {
+                listener.onError(Status.UNAVAILABLE.withDescription("Unable to resolve " + endpoints).withCause(throwable));
+            } else if (addresses.isEmpty()) {
+                listener.onError(Status.UNAVAILABLE.withDescription("No address found for " + endpoints));
+            } else {
+                listener.onResult(ResolutionResult.newBuilder().setAddresses(addresses).build());
+            }
+        }));
+    }
+
+    private List<EquivalentAddressGroup> lookup() {
+        final List<EquivalentAddressGroup> answer = new ArrayList<>();
+
+        for (String endpoint : endpoints) {
+            try {
+                if (EtcdConstants.DNS_SRV_RESOLVER.equals(resolver)) {
+                    for (InetSocketAddress address : lookupSrv(endpoint)) {
+                        answer.add(new EquivalentAddressGroup(address));
+                    }
+                } else {
+                    String hostAndPort = authority(endpoint);
+                    int index = hostAndPort.lastIndexOf(':');
+                    String host = index > 0 ? hostAndPort.substring(0, index) : hostAndPort;
+                    int port = index > 0 ? Integer.parseInt(hostAndPort.substring(index + 1)) : EtcdConstants.DEFAULT_PORT;
+
+                    InetSocketAddress address = new InetSocketAddress(host, port);
+                    if (address.isUnresolved()) {
+                        LOGGER.warn("Unable to resolve endpoint {}", endpoint);
+                    } else {
+                        answer.add(new EquivalentAddressGroup(address));
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Unable to resolve endpoint {}", endpoint, e);
+            }
+        }
+
+        LOGGER.debug("Resolved endpoints {} to {}", endpoints, answer);
+
+        return Collections.unmodifiableList(answer);
+    }
+
+    private List<InetSocketAddress> lookupSrv(String domain) throws Exception {
+        final Hashtable<String, String> env = new Hashtable<>();
+        env.put("java.naming.factory.initial", "com.sun.jndi.dns.DnsContextFactory");
+
+        final List<InetSocketAddress> answer = new ArrayList<>();
+        final DirContext context = new InitialDirContext(env);
+
+        try {
+            String service = (ssl ? "_etcd-client-ssl._tcp." : "_etcd-client._tcp.") + domain;
+            Attributes attributes = context.getAttributes(service, new String[] { "SRV" });
+            Attribute records = attributes.get("SRV");
+
+            if (records != null) {
+                NamingEnumeration<?> values = records.getAll();
+
+                while (values.hasMore()) {
+                    // priority weight port target
+                    String[] record = values.next().toString().split(" ");
+                    String target = record[3].endsWith(".") ? record[3].substring(0, record[3].length() - 1) : record[3];
+
+                    answer.add(new InetSocketAddress(target, Integer.parseInt(record[2])));
+                }
+            }
+        } finally {
+            context.close();
+        }
+
+        return answer;
+    }
+
+    /**
+     * @return the host[:port] part of the endpoint
+     */
+    static String authority(String endpoint) {
+        final int index = endpoint.indexOf("://");
+        return index >= 0 ? endpoint.substring(index + 3) : endpoint;
+    }
+
+    // **********************************
+    // Factory
+    // **********************************
+
+    static final class Factory extends NameResolver.Factory {
+        static final String SCHEME = "etcd";
+
+        private final String resolver;
+        private final List<String> endpoints;
+        private final boolean ssl;
+
+        Factory(String resolver, List<String> endpoints, boolean ssl) {
+            this.resolver = resolver;
+            this.endpoints = endpoints;
+            this.ssl = ssl;
+        }
+
+        @Override
+        public NameResolver newNameResolver(URI targetUri, Args args) {
+            return SCHEME.equals(targetUri.getScheme())
+                ? new EndpointNameResolver(resolver, endpoints, ssl, args.getSynchronizationContext())
+                : null;
+        }
+
+        @Override
+        public String getDefaultScheme() {
+            return SCHEME;
+        }
+    }
+}
@@ -16,32 +16,56 @@
  */
 package com.github.lburgazzoli.etcd.v3;
 
-import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import static java.util.Optional.ofNullable;
 
 import com.github.lburgazzoli.etcd.v3.api.AuthGrpc;
 import com.github.lburgazzoli.etcd.v3.api.AuthenticateRequest;
+import com.github.lburgazzoli.etcd.v3.api.AuthenticateResponse;
 import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.github.lburgazzoli.etcd.v3.api.LeaseGrpc;
+import com.github.lburgazzoli.etcd.v3.util.SingleFlight;
 import com.google.common.base.Strings;
 import com.google.protobuf.ByteString;
+import io.grpc.CallCredentials;
 import io.grpc.CallOptions;
 import io.grpc.Channel;
 import io.grpc.ClientCall;
 import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ConnectivityState;
 import io.grpc.ForwardingClientCall;
 import io.grpc.ForwardingClientCallListener;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.LoadBalancerRegistry;
 import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.NameResolver;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.netty.NettyChannelBuilder;
 import io.grpc.stub.AbstractStub;
+import io.grpc.stub.StreamObserver;
+import io.netty.channel.ChannelOption;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.core.net.ClientOptionsBase;
 import io.vertx.grpc.VertxChannelBuilder;
 import org.slf4j.Logger;
@@ -49,27 +73,93 @@ import org.slf4j.LoggerFactory;
 
 public class Etcd implements AutoCloseable {
     private static final Logger LOGGER = LoggerFactory.getLogger(Etcd.class);
+    private static final Map<Class<?>, Function<Channel, AbstractStub<?>>> STUBS;
+
+    // the stubs of the requests, created ahead by connect(): the watch and
+    // lease streams are opened on first use while the auth, maintenance and
+    // cluster stubs belong to the token, the limiter and the topology
+    static {
+        final Map<Class<?>, Function<Channel, AbstractStub<?>>> stubs = new HashMap<>();
+        stubs.put(KVGrpc.KVVertxStub.class, KVGrpc::newVertxStub);
+        stubs.put(LeaseGrpc.LeaseVertxStub.class, LeaseGrpc::newVertxStub);
+
+        STUBS = Collections.unmodifiableMap(stubs);
+    }
+
     private final Metadata.Key<String> TOKEN = Metadata.Key.of("token", Metadata.ASCII_STRING_MARSHALLER);
 
     private String user;
     private String password;
     private String resolver;
-    private String endpoint;
+    private List<String> endpoints;
+    private NameResolver.Factory nameResolverFactory;
+    private String loadBalancingPolicy;
+    private String inProcessServer;
     private Handler<ClientOptionsBase> clientOptionsHandler;
+    private boolean preferNativeTransport;
+    private int eventLoopPoolSize;
+    private int flowControlWindow;
+    private int maxInboundMessageSize;
+    private long keepAliveTime;
+    private long keepAliveTimeout;
+    private boolean keepAliveWithoutCalls;
+    private boolean tcpNoDelay;
+    private int sendBufferSize;
+    private int receiveBufferSize;
+    private int channels;
+    private StripingPolicy stripingPolicy;
+    private boolean leaderRouting;
+    private long topologyRefreshInterval;
+    private Etcd connection;
+    private boolean ownedVertx;
     private ManagedChannel managedChannel;
+    private Channel channel;
+    private Interceptor interceptor;
     private long tokenExpirationTime;
     private TimeUnit tokenExpirationTimeUnit;
     private long tokenExpirationJitter;
     private TimeUnit tokenExpirationJitterUnit;
+    private boolean writeBatching;
+    private int writeBatchSize;
+    private long writeBatchWindow;
+    private TimeUnit writeBatchWindowUnit;
+    private int writeBatchMaxInFlight;
+    private WriteBatcher writeBatcher;
+    private SingleFlight<GetRequest.Flight, GetResponse> readCoalescing;
     private Vertx vertx;
-    private ExecutorService executor;
+    private CompletionMode completionMode;
+    private Executor completionExecutor;
+    private EtcdMetrics metrics;
+    private long defaultDeadline;
+    private double hedgingPercentile;
+    private long hedgingMinDelay;
+    private Hedging hedging;
+    private Session session;
+    private int retryMaxAttempts;
+    private long retryInitialBackoff;
+    private long retryMaxBackoff;
+    private int retryBudgetTokens;
+    private double retryBudgetRatio;
+    private Retry retry;
+    private int concurrencyInitialLimit;
+    private int concurrencyMaxLimit;
+    private int concurrencyMaxQueued;
+    private long concurrencyLatencyTarget;
+    private long backendQuota;
+    private long storageMonitorInterval;
+    private ConcurrencyLimiter limiter;
+    private CompletionExecutor executor;
+    private ExecutorService ownedExecutor;
     private ClassValue<Stub<?>> cache;
+    private Watch watch;
+    private Lease lease;
+    private List<NearCache> nearCaches;
 
     /**
      * Private ctor
      */
     private Etcd() {
-        this.executor = Executors.newSingleThreadExecutor();
+        this.nearCaches = new CopyOnWriteArrayList<>();
         this.cache = new ClassValue<Stub<?>>() {
             @Override
             protected Stub<?> computeValue(Class<?> type) {
@@ -78,11 +168,13 @@ public class Etcd implements AutoCloseable {
                 }
 
                 try {
-                    final Channel channel = managedChannel();
-                    final Constructor<?> ctor = type.getConstructor(Channel.class);
-                    final AbstractStub stub = (AbstractStub)ctor.newInstance(channel);
+                    final Channel channel = channel();
+                    final Function<Channel, AbstractStub<?>> factory = STUBS.get(type);
+                    final AbstractStub stub = factory != null
+                        ? factory.apply(channel)
+                        : (AbstractStub)type.getConstructor(Channel.class).newInstance(channel);
 
-                    return new Stub(stub, executor);
+                    return new Stub(stub, completionMode, executor, defaultDeadline, retry(), limiter(), channels > 1 && stripingPolicy == StripingPolicy.KEY_HASH);
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
@@ -95,18 +187,48 @@ public class Etcd implements AutoCloseable {
      */
     @Override
     public void close() throws Exception {
+        synchronized (this) {
+            // the batcher is kept so the writes issued after close are
+            // rejected as well
+            if (writeBatcher != null) {
+                writeBatcher.close();
+            }
+        }
+        for (NearCache nearCache : nearCaches) {
+            nearCache.close();
+        }
+        if (watch != null) {
+            watch.close();
+            watch = null;
+        }
+        if (lease != null) {
+            lease.close();
+            lease = null;
+        }
+        if (limiter != null) {
+            limiter.close();
+            limiter = null;
+        }
+        if (interceptor != null) {
+            interceptor.token.cancel();
+            interceptor = null;
+        }
         if (managedChannel != null) {
             managedChannel.shutdown();
             managedChannel= null;
         }
-        if (vertx != null) {
+        if (vertx != null && ownedVertx) {
             vertx.close();
-            vertx= null;
         }
-        if (executor != null) {
-            executor.shutdownNow();
-            executor = null;
+
+        // a shared connection or vert.x instance is left to its owner
+        channel = null;
+        vertx = null;
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+            ownedExecutor = null;
         }
+        executor = null;
     }
 
     // **********************************
@@ -114,20 +236,201 @@ public class Etcd implements AutoCloseable {
     // **********************************
 
     public PutRequest put(String key, String value) {
+        return put(key, value, 0);
+    }
+
+    /**
+     * Puts the given key attached to the given lease, the key is deleted when
+     * the lease expires.
+     */
+    public PutRequest put(String key, String value, long lease) {
         return new PutRequest(
             (Stub<KVGrpc.KVVertxStub>)cache.get(KVGrpc.KVVertxStub.class),
-            ByteString.copyFrom(key.getBytes()),
-            ByteString.copyFrom(value.getBytes())
+            ByteString.copyFromUtf8(key),
+            ByteString.copyFromUtf8(value),
+            lease,
+            writeBatcher()
+        );
+    }
+
+    public DeleteRequest delete(String key) {
+        return new DeleteRequest(
+            (Stub<KVGrpc.KVVertxStub>)cache.get(KVGrpc.KVVertxStub.class),
+            ByteString.copyFromUtf8(key),
+            writeBatcher()
         );
     }
 
     public GetRequest get(String key) {
+        final ByteString k = ByteString.copyFromUtf8(key);
+
         return new GetRequest(
             (Stub<KVGrpc.KVVertxStub>)cache.get(KVGrpc.KVVertxStub.class),
-            ByteString.copyFrom(key.getBytes())
+            k,
+            nearCache(k),
+            readCoalescing,
+            hedging(),
+            session
+        );
+    }
+
+    public TxnRequest txn() {
+        return new TxnRequest(
+            (Stub<KVGrpc.KVVertxStub>)cache.get(KVGrpc.KVVertxStub.class)
+        );
+    }
+
+    public ScanRequest scan(String key) {
+        return new ScanRequest(
+            (Stub<KVGrpc.KVVertxStub>)cache.get(KVGrpc.KVVertxStub.class),
+            ByteString.copyFromUtf8(key)
+        );
+    }
+
+    public WatchRequest watch(String key) {
+        return new WatchRequest(
+            watchService(),
+            ByteString.copyFromUtf8(key)
+        );
+    }
+
+    // **********************************
+    // Lease
+    // **********************************
+
+    /**
+     * Grants a lease with the given TTL, in seconds.
+     */
+    public LeaseGrantRequest grant(long ttl) {
+        return new LeaseGrantRequest(
+            (Stub<LeaseGrpc.LeaseVertxStub>)cache.get(LeaseGrpc.LeaseVertxStub.class),
+            ttl
+        );
+    }
+
+    public LeaseRevokeRequest revoke(long leaseId) {
+        return new LeaseRevokeRequest(
+            (Stub<LeaseGrpc.LeaseVertxStub>)cache.get(LeaseGrpc.LeaseVertxStub.class),
+            leaseId
+        );
+    }
+
+    public LeaseTimeToLiveRequest timeToLive(long leaseId, boolean keys) {
+        return new LeaseTimeToLiveRequest(
+            (Stub<LeaseGrpc.LeaseVertxStub>)cache.get(LeaseGrpc.LeaseVertxStub.class),
+            leaseId,
+            keys
         );
     }
 
+    /**
+     * Keeps the given lease alive until the returned {@link KeepAlive} is closed
+     * or the lease expires.
+     */
+    public KeepAlive keepAlive(long leaseId, KeepAliveListener listener) {
+        return leaseService().keepAlive(leaseId, listener);
+    }
+
+    // **********************************
+    // Metrics
+    // **********************************
+
+    /**
+     * @return the number of responses waiting for a thread of the completion
+     *         executor, always 0 unless the completion mode is
+     *         {@link CompletionMode#EXECUTOR}
+     */
+    public long getCompletionQueueDepth() {
+        final CompletionExecutor completion = executor;
+        return completion != null ? completion.getQueueDepth() : 0;
+    }
+
+    /**
+     * @return the max number of concurrent requests currently allowed, 0 if
+     *         concurrency limiting is not enabled
+     */
+    public int getConcurrencyLimit() {
+        final ConcurrencyLimiter concurrency = limiter;
+        return concurrency != null ? concurrency.limit() : 0;
+    }
+
+    /**
+     * @return the number of requests waiting for the concurrency limit, a
+     *         growing number signals that the client is sending requests
+     *         faster than the cluster can serve them
+     */
+    public int getQueuedRequests() {
+        final ConcurrencyLimiter concurrency = limiter;
+        return concurrency != null ? concurrency.queued() : 0;
+    }
+
+    /**
+     * @return the number of second attempts sent by hedged reads, 0 if
+     *         hedging is not enabled
+     */
+    public long getHedgedReads() {
+        final Hedging hedges = hedging;
+        return hedges != null ? hedges.hedged() : 0;
+    }
+
+    /**
+     * @return the member id of the leader of the cluster, 0 if not known or
+     *         leader-aware routing is not enabled
+     */
+    public long getLeaderId() {
+        final ManagedChannel transport = connection != null ? connection.managedChannel : managedChannel;
+        return transport instanceof Topology ? ((Topology)transport).leaderId() : 0;
+    }
+
+    /**
+     * @return the highest revision created by the writes of this client, always
+     *         0 unless session consistency is enabled
+     */
+    public long getSessionRevision() {
+        return session != null ? session.revision() : 0;
+    }
+
+    // **********************************
+    // Near cache
+    // **********************************
+
+    public CompletableFuture<NearCache> nearCache(String prefix) {
+        return nearCache(prefix, EtcdConstants.DEFAULT_RANGE_PAGE_SIZE);
+    }
+
+    /**
+     * Creates a cache of all the keys under the given prefix, once the returned
+     * future completes, {@link #get(String)} requests for keys under the prefix
+     * are answered locally.
+     *
+     * @param prefix the prefix
+     * @param pageSize the max number of keys fetched per range request while seeding the cache
+     * @return a future completed once the cache is seeded
+     */
+    public CompletableFuture<NearCache> nearCache(String prefix, int pageSize) {
+        final NearCache nearCache = new NearCache(
+            (Stub<KVGrpc.KVVertxStub>)cache.get(KVGrpc.KVVertxStub.class),
+            watchService(),
+            vertx(),
+            ByteString.copyFromUtf8(prefix),
+            pageSize,
+            nearCaches::remove);
+
+        nearCaches.add(nearCache);
+
+        return nearCache.start();
+    }
+
+    private NearCache nearCache(ByteString key) {
+        for (NearCache nearCache : nearCaches) {
+            if (nearCache.contains(key)) {
+                return nearCache;
+            }
+        }
+
+        return null;
+    }
+
     // **********************************
     //
     // **********************************
@@ -140,232 +443,1404 @@ public class Etcd implements AutoCloseable {
     //
     // **********************************
 
-    private synchronized ManagedChannel managedChannel() {
-        if (managedChannel == null) {
-            executor = Executors.newCachedThreadPool();
-            vertx = Vertx.vertx();
+    private synchronized Channel channel() {
+        if (channel == null) {
+            if (completionMode == CompletionMode.EXECUTOR) {
+                if (completionExecutor == null) {
+                    ownedExecutor = Executors.newCachedThreadPool();
+                }
 
-            VertxChannelBuilder builder = VertxChannelBuilder.forTarget(vertx, this.endpoint);
+                executor = new CompletionExecutor(ofNullable(completionExecutor).orElse(ownedExecutor), metrics);
+            }
 
-            builder.intercept(new Interceptor());
+            final ManagedChannel transport;
 
-            if (clientOptionsHandler != null) {
-                builder.useSsl(clientOptionsHandler);
+            if (connection != null) {
+                transport = connection.transport();
+                vertx = connection.vertx();
             } else {
-                builder.usePlaintext(true);
+                transport = transport();
             }
 
-            managedChannel = builder.build();
+            // the interceptors are applied on top of the transport, which may
+            // be shared by other clients, each one with its own credentials
+            final List<ClientInterceptor> interceptors = new ArrayList<>(3);
+            interceptor = new Interceptor();
+            interceptor.token.bind(transport);
+            interceptors.add(interceptor);
+
+            if (session != null) {
+                interceptors.add(session);
+            }
+            if (metrics != null) {
+                // interceptors added last are invoked first, calls are measured
+                // as seen by the application, re-authentication included
+                interceptors.add(new MetricsInterceptor(metrics));
+            }
+
+            channel = ClientInterceptors.intercept(transport, interceptors);
+
+            if (connection == null && transport instanceof Topology) {
+                // the topology is polled with the credentials of the owner
+                ((Topology)transport).monitor(vertx, channel, topologyRefreshInterval);
+            }
         }
 
-        return managedChannel;
+        return channel;
     }
 
+    /**
+     * Connects to the cluster, creates the stubs and fetches the token ahead of
+     * the first request, the client is closed if it cannot connect.
+     */
+    private CompletableFuture<Etcd> connect() {
+        // creating vert.x and the channel blocks, so it is done on a thread of
+        // its own rather than on the common pool of the application
+        final CompletableFuture<Etcd> future = CompletableFuture
+            .supplyAsync(() -> {
+                for (Class<?> type : STUBS.keySet()) {
+                    cache.get(type);
+                }
 
-    // **********************************
-    // Token
-    // **********************************
+                return transport();
+            }, task -> {
+                final Thread thread = new Thread(task, "etcd-connect");
+                thread.setDaemon(true);
+                thread.start();
+            })
+            .thenCompose(Etcd::awaitReady)
+            .thenCompose(v -> {
+                final Token token = interceptor.token;
+                return token.isEnabled() ? token.refresh().thenApply(t -> this) : CompletableFuture.completedFuture(this);
+            });
+
+        future.whenComplete((etcd, throwable) -> {
+            if (throwable != null) {
+                try {
+                    close();
+                } catch (Exception e) {
+                    LOGGER.debug("Unable to close the client", e);
+                }
+            }
+        });
 
-    private class Token {
-        private final long timeout;
-        private final long jitter;
-        private long nextTimeout;
-        private String token;
+        return future;
+    }
 
-        Token() {
-            this.nextTimeout = 0;
-            this.timeout = tokenExpirationTimeUnit.toMillis(tokenExpirationTime);
-            this.jitter = tokenExpirationJitterUnit.toMillis(tokenExpirationJitter);
+    private static CompletableFuture<Void> awaitReady(ManagedChannel channel) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        awaitReady(channel, future);
+
+        return future;
+    }
+
+    private static void awaitReady(ManagedChannel channel, CompletableFuture<Void> future) {
+        final ConnectivityState state = channel.getState(true);
+
+        switch (state) {
+        case READY:
+            future.complete(null);
+            break;
+        case TRANSIENT_FAILURE:
+        case SHUTDOWN:
+            future.completeExceptionally(Status.UNAVAILABLE.withDescription("Unable to connect (" + state + ")").asRuntimeException());
+            break;
+        default:
+            channel.notifyWhenStateChanged(state, () -> awaitReady(channel, future));
+            break;
         }
+    }
 
-        public synchronized void refresh(Channel channel, Consumer<String> consumer) {
-            if (Strings.isNullOrEmpty(user) || Strings.isNullOrEmpty(password)) {
-                return;
-            }
+    private synchronized ManagedChannel transport() {
+        if (connection != null) {
+            return connection.transport();
+        }
 
-            try {
-                long currentTime = System.currentTimeMillis();
+        if (managedChannel == null) {
+            if (vertx == null) {
+                vertx = Vertx.vertx(vertxOptions());
+                ownedVertx = true;
 
-                if (nextTimeout < currentTime) {
-                    LOGGER.debug("Refresh token");
+                if (preferNativeTransport && !vertx.isNativeTransportEnabled()) {
+                    LOGGER.warn("Native transport not available, falling back to NIO");
+                }
+            }
 
-                    token = AuthGrpc.newFutureStub(channel).authenticate(
-                        AuthenticateRequest.newBuilder()
-                            .setName(user)
-                            .setPassword(password)
-                            .build())
-                        .get()
-                        .getToken();
+            final LoadBalancerProvider loadBalancer = LoadBalancerRegistry.getDefaultRegistry().getProvider(loadBalancingPolicy);
+            if (loadBalancer == null) {
+                throw new IllegalArgumentException("Unknown load balancing policy: " + loadBalancingPolicy);
+            }
 
-                    nextTimeout = currentTime + timeout - jitter;
+            if (perMemberChannels()) {
+                // TLS checks the host name of each member against the
+                // authority of the channel, so each member gets its own
+                final ManagedChannel[] members = new ManagedChannel[endpoints.size()];
+                for (int i = 0; i < members.length; i++) {
+                    members[i] = channel(loadBalancer, Collections.singletonList(endpoints.get(i)));
                 }
 
-                if (token != null) {
-                    consumer.accept(token);
+                managedChannel = new MemberChannel(members);
+            } else {
+                managedChannel = channel(loadBalancer, endpoints);
+            }
+
+            if (leaderRouting) {
+                // one channel per endpoint, so calls can be sent to a given member
+                final List<String> members = inProcessServer != null ? Collections.singletonList(inProcessServer) : endpoints;
+                final List<ManagedChannel> channels = new ArrayList<>(members.size());
+
+                for (String member : members) {
+                    channels.add(channelBuilder(loadBalancer, Collections.singletonList(member)).build());
                 }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+
+                managedChannel = new Topology(managedChannel, members, channels);
             }
         }
 
-        public void touch() {
-            nextTimeout = System.currentTimeMillis() + timeout - jitter;
-        }
+        return managedChannel;
     }
 
-    private class Interceptor implements ClientInterceptor {
-        private final Token token;
-
-        Interceptor() {
-            token = new Token();
+    private synchronized Vertx vertx() {
+        if (connection != null) {
+            return connection.vertx();
         }
 
-        @Override
-        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
-            return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
-                @Override
-                public void start(Listener<RespT> responseListener, Metadata headers) {
-                    token.refresh(next, t -> headers.put(TOKEN, t));
+        transport();
 
-                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
-                        @Override
-                        public void onMessage(RespT message) {
-                            token.touch();
-                            super.onMessage(message);
-                        }
-                    },
-                    headers);
-                }
-            };
-        }
+        return vertx;
     }
 
+    private ManagedChannel channel(LoadBalancerProvider loadBalancer, List<String> endpoints) {
+        if (channels > 1) {
+            final ManagedChannel[] striped = new ManagedChannel[channels];
+            for (int i = 0; i < channels; i++) {
+                striped[i] = channelBuilder(loadBalancer, endpoints).build();
+            }
 
-    // **********************************
-    // Builder
-    // **********************************
+            return new StripedChannel(striped, stripingPolicy);
+        }
+
+        return channelBuilder(loadBalancer, endpoints).build();
+    }
 
     /**
-     * Builder for {@link Etcd} client objects.
+     * @return true if the endpoints are members with different authorities
+     *         to be reached over TLS
      */
-    public static class Builder {
-        private String user;
-        private String password;
-        private String endpoint;
-        private String resolver;
-        private Handler<ClientOptionsBase> clientOptionsHandler;
-        private NameResolver.Factory nameResolverFactory;
-        private Long tokenExpirationTime;
-        private TimeUnit tokenExpirationTimeUnit;
-        private Long tokenExpirationJitter;
-        private TimeUnit tokenExpirationJitterUnit;
+    private boolean perMemberChannels() {
+        return inProcessServer == null
+            && nameResolverFactory == null
+            && clientOptionsHandler != null
+            && !EtcdConstants.DNS_SRV_RESOLVER.equals(resolver)
+            && endpoints.stream().map(EndpointNameResolver::authority).distinct().count() > 1;
+    }
 
-        private Builder() {
-        }
+    private ManagedChannelBuilder<?> channelBuilder(LoadBalancerProvider loadBalancer, List<String> endpoints) {
+        final ManagedChannelBuilder<?> builder;
 
-        public String user() {
-            return user;
+        if (inProcessServer != null) {
+            builder = InProcessChannelBuilder.forName(inProcessServer);
+        } else {
+            builder = vertxChannelBuilder(loadBalancer, endpoints);
         }
 
-        public Builder user(String user) {
-            this.user = user;
-            return this;
+        if (maxInboundMessageSize > 0) {
+            builder.maxInboundMessageSize(maxInboundMessageSize);
         }
 
-        public String password() {
-            return password;
-        }
+        return builder;
+    }
 
-        public Builder password(String password) {
-            this.password = password;
-            return this;
-        }
+    private VertxChannelBuilder vertxChannelBuilder(LoadBalancerProvider loadBalancer, List<String> endpoints) {
+        final VertxChannelBuilder builder;
 
-        public Builder tokenExpiration(Long tokenExpirationTime, TimeUnit tokenExpirationTimeUnit) {
-            this.tokenExpirationTime = tokenExpirationTime;
-            this.tokenExpirationTimeUnit = tokenExpirationTimeUnit;
-            return this;
+        if (nameResolverFactory != null) {
+            // the target is up to the user provided resolver to interpret
+            builder = VertxChannelBuilder.forTarget(vertx, nameResolverFactory.getDefaultScheme() + ":///" + String.join(",", endpoints));
+            builder.nameResolverFactory(nameResolverFactory);
+        } else {
+            builder = VertxChannelBuilder.forTarget(vertx, EndpointNameResolver.Factory.SCHEME + ":///");
+            builder.nameResolverFactory(new EndpointNameResolver.Factory(resolver, endpoints, clientOptionsHandler != null));
         }
 
-        public Long tokenExpirationTime() {
-            return tokenExpirationTime;
-        }
+        builder.loadBalancerFactory(loadBalancer);
 
-        public Builder tokenExpirationTime(Long tokenExpirationTime) {
-            this.tokenExpirationTime = tokenExpirationTime;
-            return this;
+        if (clientOptionsHandler != null) {
+            builder.useSsl(clientOptionsHandler);
+        } else {
+            builder.usePlaintext(true);
         }
 
-        public TimeUnit tokenExpirationTimeUnit() {
-            return tokenExpirationTimeUnit;
-        }
+        if (keepAliveTime > 0) {
+            builder.keepAliveTime(keepAliveTime, TimeUnit.NANOSECONDS);
+            builder.keepAliveWithoutCalls(keepAliveWithoutCalls);
 
-        public Builder tokenExpirationTimeUnit(TimeUnit tokenExpirationTimeUnit) {
-            this.tokenExpirationTimeUnit = tokenExpirationTimeUnit;
-            return this;
+            if (keepAliveTimeout > 0) {
+                builder.keepAliveTimeout(keepAliveTimeout, TimeUnit.NANOSECONDS);
+            }
         }
 
-        public Builder tokenExpirationJitter(Long tokenExpirationJitter, TimeUnit tokenExpirationJitterUnit) {
-            this.tokenExpirationJitter = tokenExpirationJitter;
-            this.tokenExpirationJitterUnit = tokenExpirationJitterUnit;
-            return this;
-        }
+        // the socket options of the vert.x client options are not applied to
+        // the channel, they are set on the underlying netty builder
+        final NettyChannelBuilder netty = builder.nettyBuilder();
+        netty.withOption(ChannelOption.TCP_NODELAY, tcpNoDelay);
 
-        public Long tokenExpirationJitter() {
-            return tokenExpirationJitter;
+        if (flowControlWindow > 0) {
+            netty.flowControlWindow(flowControlWindow);
         }
-
-        public Builder tokenExpirationJitter(Long tokenExpirationJitter) {
-            this.tokenExpirationJitter = tokenExpirationJitter;
-            return this;
+        if (sendBufferSize > 0) {
+            netty.withOption(ChannelOption.SO_SNDBUF, sendBufferSize);
         }
-
-        public TimeUnit tokenExpirationJitterUnit() {
-            return tokenExpirationJitterUnit;
+        if (receiveBufferSize > 0) {
+            netty.withOption(ChannelOption.SO_RCVBUF, receiveBufferSize);
         }
 
-        public Builder tokenExpirationJitterUnit(TimeUnit tokenExpirationJitterUnit) {
-            this.tokenExpirationJitterUnit = tokenExpirationJitterUnit;
-            return this;
-        }
+        return builder;
+    }
 
-        public String endpoints() {
-            return endpoint;
-        }
+    private VertxOptions vertxOptions() {
+        final VertxOptions options = new VertxOptions();
+        options.setPreferNativeTransport(preferNativeTransport);
 
-        public Builder endpoint(String endpoint) {
-            this.endpoint = endpoint;
-            return this;
+        if (eventLoopPoolSize > 0) {
+            options.setEventLoopPoolSize(eventLoopPoolSize);
         }
 
-        public Builder resolver(String resolver) {
-            this.resolver = resolver;
-            return this;
-        }
+        return options;
+    }
 
-        public String resolver() {
-            return resolver;
+    private synchronized WriteBatcher writeBatcher() {
+        if (writeBatching && writeBatcher == null) {
+            final Stub<KVGrpc.KVVertxStub> stub = (Stub<KVGrpc.KVVertxStub>)cache.get(KVGrpc.KVVertxStub.class);
+
+            writeBatcher = new WriteBatcher(
+                stub,
+                vertx,
+                writeBatchSize,
+                writeBatchWindowUnit.toMillis(writeBatchWindow),
+                writeBatchMaxInFlight);
         }
 
+        return writeBatcher;
+    }
 
-        public Builder clientOptionsHandler(Handler<ClientOptionsBase> clientOptionsHandler) {
-            this.clientOptionsHandler = clientOptionsHandler;
-            return this;
-        }
+    private synchronized Hedging hedging() {
+        if (hedgingPercentile > 0 && hedging == null) {
+            channel();
 
-        public Handler<ClientOptionsBase> clientOptionsHandler() {
-            return clientOptionsHandler;
+            hedging = new Hedging(vertx, hedgingPercentile, hedgingMinDelay);
         }
 
-        public NameResolver.Factory nameResolverFactory() {
-            return nameResolverFactory;
+        return hedging;
+    }
+
+    private synchronized Retry retry() {
+        if (retryMaxAttempts > 1 && retry == null) {
+            channel();
+
+            retry = new Retry(vertx, retryMaxAttempts, retryInitialBackoff, retryMaxBackoff, retryBudgetTokens, retryBudgetRatio);
         }
 
-        public Builder nameResolverFactory(NameResolver.Factory nameResolverFactory) {
-            this.nameResolverFactory = nameResolverFactory;
+        return retry;
+    }
+
+    private synchronized ConcurrencyLimiter limiter() {
+        if (concurrencyMaxLimit > 0 && limiter == null) {
+            final Channel channel = channel();
+
+            limiter = new ConcurrencyLimiter(concurrencyInitialLimit, concurrencyMaxLimit, concurrencyMaxQueued, concurrencyLatencyTarget);
+            limiter.monitor(vertx, channel, backendQuota, storageMonitorInterval);
+        }
+
+        return limiter;
+    }
+
+    private synchronized Lease leaseService() {
+        if (lease == null) {
+            final Channel channel = channel();
+
+            lease = new Lease(channel);
+        }
+
+        return lease;
+    }
+
+    private synchronized Watch watchService() {
+        if (watch == null) {
+            final Channel channel = channel();
+
+            watch = new Watch(channel, vertx);
+        }
+
+        return watch;
+    }
+
+
+    // **********************************
+    // Token
+    // **********************************
+
+    private class Token extends CallCredentials {
+        private final long timeout;
+        private final long jitter;
+        private final AtomicReference<CompletableFuture<String>> refresh;
+        private volatile Channel channel;
+        private volatile String token;
+        private volatile long nextTimeout;
+        private long timer;
+
+        Token() {
+            this.timeout = tokenExpirationTimeUnit.toMillis(tokenExpirationTime);
+            this.jitter = tokenExpirationJitterUnit.toMillis(tokenExpirationJitter);
+            this.refresh = new AtomicReference<>();
+            this.nextTimeout = 0;
+            this.timer = -1;
+        }
+
+        public boolean isEnabled() {
+            return !Strings.isNullOrEmpty(user) && !Strings.isNullOrEmpty(password);
+        }
+
+        public void bind(Channel channel) {
+            if (this.channel == null) {
+                this.channel = channel;
+            }
+        }
+
+        @Override
+        public void applyRequestMetadata(RequestInfo requestInfo, Executor appExecutor, MetadataApplier applier) {
+            final String current = token;
+
+            if (current != null && System.currentTimeMillis() < nextTimeout) {
+                applier.apply(headers(current));
+                return;
+            }
+
+            refresh().whenComplete((t, e) -> {
+                if (e != null) {
+                    applier.fail(Status.UNAUTHENTICATED.withDescription("Unable to authenticate").withCause(e));
+                } else {
+                    applier.apply(headers(t));
+                }
+            });
+        }
+
+        @Override
+        public void thisUsesUnstableApi() {
+        }
+
+        /**
+         * Starts a new authenticate request unless one is already in flight.
+         */
+        public CompletableFuture<String> refresh() {
+            while (true) {
+                final CompletableFuture<String> current = refresh.get();
+                if (current != null) {
+                    return current;
+                }
+
+                final CompletableFuture<String> future = new CompletableFuture<>();
+                if (refresh.compareAndSet(null, future)) {
+                    authenticate(future);
+                    return future;
+                }
+            }
+        }
+
+        public void invalidate(String invalid) {
+            if (invalid != null && invalid.equals(token)) {
+                nextTimeout = 0;
+            }
+        }
+
+        public void touch() {
+            nextTimeout = System.currentTimeMillis() + timeout - jitter;
+        }
+
+        private void authenticate(CompletableFuture<String> future) {
+            LOGGER.debug("Refresh token");
+
+            final long start = System.nanoTime();
+
+            AuthenticateRequest request = AuthenticateRequest.newBuilder()
+                .setName(user)
+                .setPassword(password)
+                .build();
+
+            AuthGrpc.newStub(channel).authenticate(request, new StreamObserver<AuthenticateResponse>() {
+                @Override
+                public void onNext(AuthenticateResponse response) {
+                    if (metrics != null) {
+                        metrics.tokenRefreshed(true, System.nanoTime() - start);
+                    }
+
+                    token = response.getToken();
+                    touch();
+                    schedule();
+
+                    refresh.compareAndSet(future, null);
+                    future.complete(response.getToken());
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    LOGGER.warn("Unable to refresh token", throwable);
+
+                    if (metrics != null) {
+                        metrics.tokenRefreshed(false, System.nanoTime() - start);
+                    }
+
+                    refresh.compareAndSet(future, null);
+                    future.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onCompleted() {
+                }
+            });
+        }
+
+        /**
+         * Stops refreshing the token.
+         */
+        public synchronized void cancel() {
+            final Vertx vertx = Etcd.this.vertx;
+
+            if (vertx != null && timer != -1) {
+                vertx.cancelTimer(timer);
+                timer = -1;
+            }
+        }
+
+        /**
+         * Schedules the refresh of the token ahead of its expiration so calls
+         * never wait for it.
+         */
+        private synchronized void schedule() {
+            final Vertx vertx = Etcd.this.vertx;
+            if (vertx == null) {
+                return;
+            }
+
+            if (timer != -1) {
+                vertx.cancelTimer(timer);
+            }
+
+            timer = vertx.setTimer(Math.max(1, nextTimeout - jitter - System.currentTimeMillis()), id -> {
+                synchronized (this) {
+                    if (timer != id) {
+                        return;
+                    }
+                    timer = -1;
+                }
+
+                if (System.currentTimeMillis() >= nextTimeout - jitter) {
+                    refresh();
+                } else {
+                    // the token has been used in the meantime
+                    schedule();
+                }
+            });
+        }
+
+        private Metadata headers(String token) {
+            Metadata headers = new Metadata();
+            headers.put(TOKEN, token);
+            return headers;
+        }
+    }
+
+    private class Interceptor implements ClientInterceptor {
+        private final Token token;
+
+        Interceptor() {
+            token = new Token();
+        }
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+            if (!token.isEnabled()) {
+                return next.newCall(method, callOptions);
+            }
+
+            token.bind(next);
+
+            final CallOptions options = callOptions.withCallCredentials(token);
+
+            if (method.getType() == MethodDescriptor.MethodType.UNARY) {
+                return new ReauthenticatingCall<>(method, options, next);
+            }
+
+            return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, options)) {
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                        @Override
+                        public void onMessage(RespT message) {
+                            token.touch();
+                            super.onMessage(message);
+                        }
+                    },
+                    headers);
+                }
+            };
+        }
+
+        /**
+         * A unary call that is transparently re-issued, once, with a fresh token
+         * if the server rejects the one it has been sent with.
+         */
+        private class ReauthenticatingCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+            private final MethodDescriptor<ReqT, RespT> method;
+            private final CallOptions callOptions;
+            private final Channel next;
+            private volatile ClientCall<ReqT, RespT> delegate;
+            private Listener<RespT> listener;
+            private Metadata headers;
+            private ReqT message;
+            private int requested;
+            private boolean halfClosed;
+            private volatile boolean cancelled;
+            private volatile boolean retried;
+
+            ReauthenticatingCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+                this.method = method;
+                this.callOptions = callOptions;
+                this.next = next;
+                this.delegate = next.newCall(method, callOptions);
+            }
+
+            @Override
+            public synchronized void start(Listener<RespT> responseListener, Metadata headers) {
+                this.listener = responseListener;
+                this.headers = new Metadata();
+                this.headers.merge(headers);
+
+                delegate.start(new AttemptListener(token.token), headers);
+            }
+
+            @Override
+            public synchronized void request(int numMessages) {
+                requested += numMessages;
+                delegate.request(numMessages);
+            }
+
+            @Override
+            public synchronized void cancel(String message, Throwable cause) {
+                cancelled = true;
+                delegate.cancel(message, cause);
+            }
+
+            @Override
+            public synchronized void halfClose() {
+                halfClosed = true;
+                delegate.halfClose();
+            }
+
+            @Override
+            public synchronized void sendMessage(ReqT message) {
+                this.message = message;
+                delegate.sendMessage(message);
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setMessageCompression(boolean enabled) {
+                delegate.setMessageCompression(enabled);
+            }
+
+            private synchronized void retry() {
+                final Metadata retryHeaders = new Metadata();
+                retryHeaders.merge(headers);
+
+                delegate = next.newCall(method, callOptions);
+                delegate.start(new AttemptListener(null), retryHeaders);
+                delegate.request(requested);
+
+                if (message != null) {
+                    delegate.sendMessage(message);
+                }
+                if (halfClosed) {
+                    delegate.halfClose();
+                }
+            }
+
+            private class AttemptListener extends Listener<RespT> {
+                private final String sentToken;
+                private boolean received;
+
+                AttemptListener(String sentToken) {
+                    this.sentToken = sentToken;
+                    this.received = false;
+                }
+
+                @Override
+                public void onHeaders(Metadata headers) {
+                    received = true;
+                    listener.onHeaders(headers);
+                }
+
+                @Override
+                public void onMessage(RespT message) {
+                    received = true;
+                    token.touch();
+                    listener.onMessage(message);
+                }
+
+                @Override
+                public void onReady() {
+                    listener.onReady();
+                }
+
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                    if (!received && !retried && !cancelled && isInvalidToken(status)) {
+                        LOGGER.debug("Token rejected ({}), retry {}", status, method.getFullMethodName());
+
+                        // the application may still be sending the request, the
+                        // call is locked until the new attempt is in place
+                        retried = true;
+                        token.invalidate(sentToken != null ? sentToken : token.token);
+                        retry();
+                        return;
+                    }
+
+                    listener.onClose(status, trailers);
+                }
+            }
+        }
+    }
+
+    private static boolean isInvalidToken(Status status) {
+        final String description = status.getDescription();
+
+        switch (status.getCode()) {
+        case UNAUTHENTICATED:
+            return description != null && description.contains("invalid auth token");
+        case INVALID_ARGUMENT:
+            return description != null && description.contains("revision of auth store is old");
+        default:
+            return false;
+        }
+    }
+
+
+    // **********************************
+    // Builder
+    // **********************************
+
+    /**
+     * Builder for {@link Etcd} client objects.
+     */
+    public static class Builder {
+        private String user;
+        private String password;
+        private List<String> endpoints;
+        private String inProcessServer;
+        private Vertx vertx;
+        private Etcd connection;
+        private String resolver;
+        private String loadBalancingPolicy;
+        private Handler<ClientOptionsBase> clientOptionsHandler;
+        private Boolean preferNativeTransport;
+        private Integer eventLoopPoolSize;
+        private Integer flowControlWindow;
+        private Integer maxInboundMessageSize;
+        private Long keepAliveTime;
+        private Long keepAliveTimeout;
+        private TimeUnit keepAliveUnit;
+        private Boolean keepAliveWithoutCalls;
+        private Boolean tcpNoDelay;
+        private Integer sendBufferSize;
+        private Integer receiveBufferSize;
+        private Integer channels;
+        private StripingPolicy stripingPolicy;
+        private Boolean leaderRouting;
+        private Long topologyRefreshInterval;
+        private TimeUnit topologyRefreshIntervalUnit;
+        private NameResolver.Factory nameResolverFactory;
+        private Long tokenExpirationTime;
+        private TimeUnit tokenExpirationTimeUnit;
+        private Long tokenExpirationJitter;
+        private TimeUnit tokenExpirationJitterUnit;
+        private Boolean writeBatching;
+        private Integer writeBatchSize;
+        private Long writeBatchWindow;
+        private TimeUnit writeBatchWindowUnit;
+        private Integer writeBatchMaxInFlight;
+        private Boolean readCoalescing;
+        private CompletionMode completionMode;
+        private Executor completionExecutor;
+        private EtcdMetrics metrics;
+        private Long defaultDeadline;
+        private TimeUnit defaultDeadlineUnit;
+        private Boolean sessionConsistency;
+        private Integer concurrencyInitialLimit;
+        private Integer concurrencyMaxLimit;
+        private Integer concurrencyMaxQueued;
+        private Long concurrencyLatencyTarget;
+        private TimeUnit concurrencyLatencyTargetUnit;
+        private Long backendQuota;
+        private Long storageMonitorInterval;
+        private TimeUnit storageMonitorIntervalUnit;
+        private Integer retryMaxAttempts;
+        private Long retryInitialBackoff;
+        private Long retryMaxBackoff;
+        private TimeUnit retryBackoffUnit;
+        private Integer retryBudgetTokens;
+        private Double retryBudgetRatio;
+        private Double hedgingPercentile;
+        private Long hedgingMinDelay;
+        private TimeUnit hedgingMinDelayUnit;
+
+        private Builder() {
+        }
+
+        public String user() {
+            return user;
+        }
+
+        public Builder user(String user) {
+            this.user = user;
+            return this;
+        }
+
+        public String password() {
+            return password;
+        }
+
+        public Builder password(String password) {
+            this.password = password;
+            return this;
+        }
+
+        public Builder tokenExpiration(Long tokenExpirationTime, TimeUnit tokenExpirationTimeUnit) {
+            this.tokenExpirationTime = tokenExpirationTime;
+            this.tokenExpirationTimeUnit = tokenExpirationTimeUnit;
+            return this;
+        }
+
+        public Long tokenExpirationTime() {
+            return tokenExpirationTime;
+        }
+
+        public Builder tokenExpirationTime(Long tokenExpirationTime) {
+            this.tokenExpirationTime = tokenExpirationTime;
+            return this;
+        }
+
+        public TimeUnit tokenExpirationTimeUnit() {
+            return tokenExpirationTimeUnit;
+        }
+
+        public Builder tokenExpirationTimeUnit(TimeUnit tokenExpirationTimeUnit) {
+            this.tokenExpirationTimeUnit = tokenExpirationTimeUnit;
+            return this;
+        }
+
+        public Builder tokenExpirationJitter(Long tokenExpirationJitter, TimeUnit tokenExpirationJitterUnit) {
+            this.tokenExpirationJitter = tokenExpirationJitter;
+            this.tokenExpirationJitterUnit = tokenExpirationJitterUnit;
+            return this;
+        }
+
+        public Long tokenExpirationJitter() {
+            return tokenExpirationJitter;
+        }
+
+        public Builder tokenExpirationJitter(Long tokenExpirationJitter) {
+            this.tokenExpirationJitter = tokenExpirationJitter;
+            return this;
+        }
+
+        public TimeUnit tokenExpirationJitterUnit() {
+            return tokenExpirationJitterUnit;
+        }
+
+        public Builder tokenExpirationJitterUnit(TimeUnit tokenExpirationJitterUnit) {
+            this.tokenExpirationJitterUnit = tokenExpirationJitterUnit;
+            return this;
+        }
+
+        /**
+         * Enables the coalescing of concurrent puts and deletes into batched Txn
+         * requests.
+         */
+        public Builder writeBatching(Boolean writeBatching) {
+            this.writeBatching = writeBatching;
+            return this;
+        }
+
+        public Boolean writeBatching() {
+            return writeBatching;
+        }
+
+        /**
+         * The max number of operations per batch, it should not exceed the
+         * --max-txn-ops setting of the etcd server.
+         */
+        public Builder writeBatchSize(Integer writeBatchSize) {
+            this.writeBatchSize = writeBatchSize;
+            return this;
+        }
+
+        public Integer writeBatchSize() {
+            return writeBatchSize;
+        }
+
+        /**
+         * The max time an operation waits for other operations to be batched with.
+         */
+        public Builder writeBatchWindow(Long writeBatchWindow, TimeUnit writeBatchWindowUnit) {
+            this.writeBatchWindow = writeBatchWindow;
+            this.writeBatchWindowUnit = writeBatchWindowUnit;
+            return this;
+        }
+
+        public Long writeBatchWindow() {
+            return writeBatchWindow;
+        }
+
+        public TimeUnit writeBatchWindowUnit() {
+            return writeBatchWindowUnit;
+        }
+
+        /**
+         * The max number of batches sent concurrently.
+         */
+        public Builder writeBatchMaxInFlight(Integer writeBatchMaxInFlight) {
+            this.writeBatchMaxInFlight = writeBatchMaxInFlight;
+            return this;
+        }
+
+        public Integer writeBatchMaxInFlight() {
+            return writeBatchMaxInFlight;
+        }
+
+        /**
+         * Enables the sharing of a single range call among identical concurrent
+         * get requests.
+         *
+         * A caller joining a call already in flight may get a result older than a
+         * write completed after the call has been sent, so reads are no longer
+         * strictly linearizable.
+         */
+        public Builder readCoalescing(Boolean readCoalescing) {
+            this.readCoalescing = readCoalescing;
+            return this;
+        }
+
+        public Boolean readCoalescing() {
+            return readCoalescing;
+        }
+
+        /**
+         * Defines the thread the futures returned by requests are completed on,
+         * {@link CompletionMode#EXECUTOR} by default.
+         */
+        public Builder completionMode(CompletionMode completionMode) {
+            this.completionMode = completionMode;
+            return this;
+        }
+
+        public CompletionMode completionMode() {
+            return completionMode;
+        }
+
+        /**
+         * The executor used with {@link CompletionMode#EXECUTOR}, a bounded one
+         * is recommended, if not set an unbounded cached thread pool is used.
+         * The executor is not shut down when the client is closed.
+         */
+        public Builder completionExecutor(Executor completionExecutor) {
+            this.completionExecutor = completionExecutor;
+            return this;
+        }
+
+        public Executor completionExecutor() {
+            return completionExecutor;
+        }
+
+        /**
+         * The metrics to report the calls to, none by default.
+         */
+        public Builder metrics(EtcdMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public EtcdMetrics metrics() {
+            return metrics;
+        }
+
+        /**
+         * The deadline of the requests that do not set one, none by default.
+         */
+        public Builder defaultDeadline(Long defaultDeadline, TimeUnit defaultDeadlineUnit) {
+            this.defaultDeadline = defaultDeadline;
+            this.defaultDeadlineUnit = defaultDeadlineUnit;
+            return this;
+        }
+
+        public Long defaultDeadline() {
+            return defaultDeadline;
+        }
+
+        public TimeUnit defaultDeadlineUnit() {
+            return defaultDeadlineUnit;
+        }
+
+        /**
+         * Serves reads as serializable ones, accepting them only if they reflect
+         * all the writes made so far by this client and falling back to a
+         * linearizable read otherwise. Disabled by default.
+         */
+        public Builder sessionConsistency(Boolean sessionConsistency) {
+            this.sessionConsistency = sessionConsistency;
+            return this;
+        }
+
+        public Boolean sessionConsistency() {
+            return sessionConsistency;
+        }
+
+        /**
+         * Limits the number of concurrent requests, the limit starts from the
+         * given initial one and adapts to the latency of the requests up to
+         * the given max one. Requests above the limit wait in a queue of the
+         * given size and fail with a RejectedExecutionException once it is
+         * full. Disabled by default.
+         */
+        public Builder concurrencyLimit(Integer initialLimit, Integer maxLimit, Integer maxQueued) {
+            this.concurrencyInitialLimit = initialLimit;
+            this.concurrencyMaxLimit = maxLimit;
+            this.concurrencyMaxQueued = maxQueued;
+            return this;
+        }
+
+        public Integer concurrencyInitialLimit() {
+            return concurrencyInitialLimit;
+        }
+
+        public Integer concurrencyMaxLimit() {
+            return concurrencyMaxLimit;
+        }
+
+        public Integer concurrencyMaxQueued() {
+            return concurrencyMaxQueued;
+        }
+
+        /**
+         * The latency above which the concurrency limit is decreased, defaults
+         * to 500 ms.
+         */
+        public Builder concurrencyLatencyTarget(Long latencyTarget, TimeUnit latencyTargetUnit) {
+            this.concurrencyLatencyTarget = latencyTarget;
+            this.concurrencyLatencyTargetUnit = latencyTargetUnit;
+            return this;
+        }
+
+        public Long concurrencyLatencyTarget() {
+            return concurrencyLatencyTarget;
+        }
+
+        public TimeUnit concurrencyLatencyTargetUnit() {
+            return concurrencyLatencyTargetUnit;
+        }
+
+        /**
+         * The backend quota of the members, the concurrency limit is lowered as
+         * their database size approaches it or a NOSPACE alarm is raised, as
+         * seen by polling the cluster at the given interval. Defaults to the
+         * etcd default quota of 2 GB, polled every 5 seconds.
+         */
+        public Builder storageMonitor(Long backendQuota, Long interval, TimeUnit intervalUnit) {
+            this.backendQuota = backendQuota;
+            this.storageMonitorInterval = interval;
+            this.storageMonitorIntervalUnit = intervalUnit;
+            return this;
+        }
+
+        public Long backendQuota() {
+            return backendQuota;
+        }
+
+        public Long storageMonitorInterval() {
+            return storageMonitorInterval;
+        }
+
+        public TimeUnit storageMonitorIntervalUnit() {
+            return storageMonitorIntervalUnit;
+        }
+
+        /**
+         * Retries idempotent requests failed with UNAVAILABLE or RESOURCE_EXHAUSTED,
+         * but for exceeded message size limits, up to the given number of
+         * attempts, waiting a random delay up to an exponentially growing backoff
+         * between them. Retries are enabled by default, with 3 attempts and a
+         * backoff from 50 ms to 1 s: set 1 attempt to disable them and fail on
+         * the first error as previous versions did.
+         */
+        public Builder retries(Integer maxAttempts, Long initialBackoff, Long maxBackoff, TimeUnit backoffUnit) {
+            this.retryMaxAttempts = maxAttempts;
+            this.retryInitialBackoff = initialBackoff;
+            this.retryMaxBackoff = maxBackoff;
+            this.retryBackoffUnit = backoffUnit;
+            return this;
+        }
+
+        public Integer retryMaxAttempts() {
+            return retryMaxAttempts;
+        }
+
+        public Long retryInitialBackoff() {
+            return retryInitialBackoff;
+        }
+
+        public Long retryMaxBackoff() {
+            return retryMaxBackoff;
+        }
+
+        public TimeUnit retryBackoffUnit() {
+            return retryBackoffUnit;
+        }
+
+        /**
+         * Bounds the retries of the client: each failure takes a token, each
+         * success gives back the given ratio of a token, and retries stop when
+         * half of the tokens are gone. Defaults to 10 tokens and a 0.1 ratio.
+         */
+        public Builder retryBudget(Integer tokens, Double ratio) {
+            this.retryBudgetTokens = tokens;
+            this.retryBudgetRatio = ratio;
+            return this;
+        }
+
+        public Integer retryBudgetTokens() {
+            return retryBudgetTokens;
+        }
+
+        public Double retryBudgetRatio() {
+            return retryBudgetRatio;
+        }
+
+        /**
+         * Hedges serializable reads: if a read has not completed after the given
+         * percentile of the recent read latencies, but no less than the given
+         * min delay, a second read is sent to another member and the slowest one
+         * is cancelled. Disabled by default.
+         */
+        public Builder hedgedReads(Double percentile, Long minDelay, TimeUnit minDelayUnit) {
+            this.hedgingPercentile = percentile;
+            this.hedgingMinDelay = minDelay;
+            this.hedgingMinDelayUnit = minDelayUnit;
+            return this;
+        }
+
+        public Double hedgingPercentile() {
+            return hedgingPercentile;
+        }
+
+        public Long hedgingMinDelay() {
+            return hedgingMinDelay;
+        }
+
+        public TimeUnit hedgingMinDelayUnit() {
+            return hedgingMinDelayUnit;
+        }
+
+        /**
+         * @return the endpoints, comma separated
+         */
+        public String endpoints() {
+            return endpoints != null ? String.join(",", endpoints) : null;
+        }
+
+        public List<String> endpointList() {
+            return endpoints;
+        }
+
+        /**
+         * Connects to a server running on gRPC's in-process transport with the
+         * given name instead of the endpoints, meant for tests and benchmarks.
+         */
+        public Builder inProcessServer(String inProcessServer) {
+            this.inProcessServer = inProcessServer;
+            return this;
+        }
+
+        public String inProcessServer() {
+            return inProcessServer;
+        }
+
+        /**
+         * Runs the client on the given Vert.x instance instead of creating one,
+         * so many clients share the same event loops. The instance is not
+         * closed when the client is closed.
+         */
+        public Builder vertx(Vertx vertx) {
+            this.vertx = vertx;
+            return this;
+        }
+
+        public Vertx vertx() {
+            return vertx;
+        }
+
+        /**
+         * Builds a lightweight client, i.e. for a tenant, on top of the
+         * connections of the given one: only the credentials and the request
+         * level settings of this builder apply, the endpoints and the transport
+         * are the ones of the given client, which must outlive this one.
+         */
+        public Builder connection(Etcd connection) {
+            this.connection = connection;
+            return this;
+        }
+
+        public Etcd connection() {
+            return connection;
+        }
+
+        public Builder endpoint(String endpoint) {
+            return endpoints(Collections.singletonList(endpoint));
+        }
+
+        /**
+         * The endpoints of the cluster members, calls are balanced among them
+         * according to the load balancing policy.
+         */
+        public Builder endpoints(String... endpoints) {
+            return endpoints(Arrays.asList(endpoints));
+        }
+
+        public Builder endpoints(List<String> endpoints) {
+            this.endpoints = new ArrayList<>(endpoints);
+            return this;
+        }
+
+        /**
+         * The gRPC load balancing policy used to pick a member among the
+         * resolved ones, {@link EtcdConstants#ROUND_ROBIN_POLICY} by default.
+         */
+        public Builder loadBalancingPolicy(String loadBalancingPolicy) {
+            this.loadBalancingPolicy = loadBalancingPolicy;
+            return this;
+        }
+
+        public String loadBalancingPolicy() {
+            return loadBalancingPolicy;
+        }
+
+        public Builder resolver(String resolver) {
+            this.resolver = resolver;
+            return this;
+        }
+
+        public String resolver() {
+            return resolver;
+        }
+
+
+        public Builder clientOptionsHandler(Handler<ClientOptionsBase> clientOptionsHandler) {
+            this.clientOptionsHandler = clientOptionsHandler;
+            return this;
+        }
+
+        public Handler<ClientOptionsBase> clientOptionsHandler() {
+            return clientOptionsHandler;
+        }
+
+        /**
+         * Uses the native transport, epoll on Linux, if available on the class
+         * path. Defaults to false.
+         */
+        public Builder preferNativeTransport(Boolean preferNativeTransport) {
+            this.preferNativeTransport = preferNativeTransport;
+            return this;
+        }
+
+        public Boolean preferNativeTransport() {
+            return preferNativeTransport;
+        }
+
+        /**
+         * The number of event loops of the client, defaults to twice the number
+         * of cores.
+         */
+        public Builder eventLoopPoolSize(Integer eventLoopPoolSize) {
+            this.eventLoopPoolSize = eventLoopPoolSize;
+            return this;
+        }
+
+        public Integer eventLoopPoolSize() {
+            return eventLoopPoolSize;
+        }
+
+        /**
+         * The initial HTTP/2 flow-control window, in bytes, a larger window lets
+         * large ranges and snapshots stream without waiting for window updates.
+         * Defaults to 1 MB.
+         */
+        public Builder flowControlWindow(Integer flowControlWindow) {
+            this.flowControlWindow = flowControlWindow;
+            return this;
+        }
+
+        public Integer flowControlWindow() {
+            return flowControlWindow;
+        }
+
+        /**
+         * The max size, in bytes, of a response, defaults to 4 MB.
+         */
+        public Builder maxInboundMessageSize(Integer maxInboundMessageSize) {
+            this.maxInboundMessageSize = maxInboundMessageSize;
+            return this;
+        }
+
+        public Integer maxInboundMessageSize() {
+            return maxInboundMessageSize;
+        }
+
+        /**
+         * Pings the server if the connection has been idle for the given time
+         * and closes it if no ack arrives within the given timeout. Disabled by
+         * default.
+         */
+        public Builder keepAlive(Long keepAliveTime, Long keepAliveTimeout, TimeUnit keepAliveUnit) {
+            this.keepAliveTime = keepAliveTime;
+            this.keepAliveTimeout = keepAliveTimeout;
+            this.keepAliveUnit = keepAliveUnit;
+            return this;
+        }
+
+        public Long keepAliveTime() {
+            return keepAliveTime;
+        }
+
+        public Long keepAliveTimeout() {
+            return keepAliveTimeout;
+        }
+
+        public TimeUnit keepAliveUnit() {
+            return keepAliveUnit;
+        }
+
+        /**
+         * Sends keepalive pings even if there are no calls in flight, defaults
+         * to false.
+         */
+        public Builder keepAliveWithoutCalls(Boolean keepAliveWithoutCalls) {
+            this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+            return this;
+        }
+
+        public Boolean keepAliveWithoutCalls() {
+            return keepAliveWithoutCalls;
+        }
+
+        /**
+         * Disables Nagle's algorithm, defaults to true.
+         */
+        public Builder tcpNoDelay(Boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+
+        public Boolean tcpNoDelay() {
+            return tcpNoDelay;
+        }
+
+        /**
+         * The sizes, in bytes, of the socket send and receive buffers, defaults
+         * to the ones of the operating system.
+         */
+        public Builder socketBufferSizes(Integer sendBufferSize, Integer receiveBufferSize) {
+            this.sendBufferSize = sendBufferSize;
+            this.receiveBufferSize = receiveBufferSize;
+            return this;
+        }
+
+        public Integer sendBufferSize() {
+            return sendBufferSize;
+        }
+
+        public Integer receiveBufferSize() {
+            return receiveBufferSize;
+        }
+
+        /**
+         * Spreads the calls over the given number of channels, each one with its
+         * own connection to every endpoint, according to the given policy.
+         * Defaults to a single channel.
+         */
+        public Builder channels(Integer channels, StripingPolicy stripingPolicy) {
+            this.channels = channels;
+            this.stripingPolicy = stripingPolicy;
+            return this;
+        }
+
+        public Integer channels() {
+            return channels;
+        }
+
+        public StripingPolicy stripingPolicy() {
+            return stripingPolicy;
+        }
+
+        /**
+         * Sends writes straight to the leader and serializable reads to the
+         * least loaded follower, learning the role of the members by polling
+         * them at the given interval and as soon as a response shows a new
+         * raft term. Every endpoint must be a single member for its calls to
+         * be routed. Disabled by default, polled every 5 seconds if enabled.
+         */
+        public Builder leaderRouting(Boolean leaderRouting) {
+            this.leaderRouting = leaderRouting;
+            return this;
+        }
+
+        public Boolean leaderRouting() {
+            return leaderRouting;
+        }
+
+        public Builder topologyRefreshInterval(Long interval, TimeUnit intervalUnit) {
+            this.topologyRefreshInterval = interval;
+            this.topologyRefreshIntervalUnit = intervalUnit;
+            return this;
+        }
+
+        public Long topologyRefreshInterval() {
+            return topologyRefreshInterval;
+        }
+
+        public TimeUnit topologyRefreshIntervalUnit() {
+            return topologyRefreshIntervalUnit;
+        }
+
+        public NameResolver.Factory nameResolverFactory() {
+            return nameResolverFactory;
+        }
+
+        public Builder nameResolverFactory(NameResolver.Factory nameResolverFactory) {
+            this.nameResolverFactory = nameResolverFactory;
             return this;
         }
 
+        /**
+         * Builds a client and connects it in the background: the future
+         * completes once the connections are open and the token, if any, has
+         * been fetched, so the first request does not pay for them.
+         */
+        public CompletableFuture<Etcd> connect() {
+            return build().connect();
+        }
+
         /**
          * Constructs a new {@link Etcd} client.
          *
@@ -379,9 +1854,54 @@ public class Etcd implements AutoCloseable {
             etcd.tokenExpirationTimeUnit = ofNullable(tokenExpirationTimeUnit).orElse(TimeUnit.MINUTES);
             etcd.tokenExpirationJitter = ofNullable(tokenExpirationJitter).orElse(5L);
             etcd.tokenExpirationJitterUnit = ofNullable(tokenExpirationJitterUnit).orElse(TimeUnit.SECONDS);
-            etcd.endpoint = this.endpoint;
+            etcd.writeBatching = ofNullable(writeBatching).orElse(false);
+            etcd.writeBatchSize = ofNullable(writeBatchSize).orElse(EtcdConstants.DEFAULT_WRITE_BATCH_SIZE);
+            etcd.writeBatchWindow = ofNullable(writeBatchWindow).orElse(1L);
+            etcd.writeBatchWindowUnit = ofNullable(writeBatchWindowUnit).orElse(TimeUnit.MILLISECONDS);
+            etcd.writeBatchMaxInFlight = ofNullable(writeBatchMaxInFlight).orElse(4);
+            etcd.readCoalescing = ofNullable(readCoalescing).orElse(false) ? new SingleFlight<>() : null;
+            etcd.completionMode = ofNullable(completionMode).orElse(CompletionMode.EXECUTOR);
+            etcd.completionExecutor = completionExecutor;
+            etcd.metrics = metrics;
+            etcd.defaultDeadline = ofNullable(defaultDeadlineUnit).orElse(TimeUnit.MILLISECONDS).toNanos(ofNullable(defaultDeadline).orElse(0L));
+            etcd.session = ofNullable(sessionConsistency).orElse(false) ? new Session() : null;
+            etcd.concurrencyMaxLimit = ofNullable(concurrencyMaxLimit).orElse(0);
+            etcd.concurrencyInitialLimit = ofNullable(concurrencyInitialLimit).orElse(etcd.concurrencyMaxLimit);
+            etcd.concurrencyMaxQueued = ofNullable(concurrencyMaxQueued).orElse(0);
+            etcd.concurrencyLatencyTarget = ofNullable(concurrencyLatencyTargetUnit).orElse(TimeUnit.MILLISECONDS).toNanos(ofNullable(concurrencyLatencyTarget).orElse(500L));
+            etcd.backendQuota = ofNullable(backendQuota).orElse(EtcdConstants.DEFAULT_BACKEND_QUOTA);
+            etcd.storageMonitorInterval = ofNullable(storageMonitorIntervalUnit).orElse(TimeUnit.MILLISECONDS).toMillis(ofNullable(storageMonitorInterval).orElse(5000L));
+            etcd.retryMaxAttempts = ofNullable(retryMaxAttempts).orElse(3);
+            etcd.retryInitialBackoff = ofNullable(retryBackoffUnit).orElse(TimeUnit.MILLISECONDS).toMillis(ofNullable(retryInitialBackoff).orElse(50L));
+            etcd.retryMaxBackoff = ofNullable(retryBackoffUnit).orElse(TimeUnit.MILLISECONDS).toMillis(ofNullable(retryMaxBackoff).orElse(1000L));
+            etcd.retryBudgetTokens = ofNullable(retryBudgetTokens).orElse(10);
+            etcd.retryBudgetRatio = ofNullable(retryBudgetRatio).orElse(0.1);
+            etcd.hedgingPercentile = ofNullable(hedgingPercentile).orElse(0.0);
+            etcd.hedgingMinDelay = ofNullable(hedgingMinDelayUnit).orElse(TimeUnit.MILLISECONDS).toMillis(ofNullable(hedgingMinDelay).orElse(1L));
+            etcd.inProcessServer = inProcessServer;
+            etcd.vertx = vertx;
+            etcd.connection = connection;
+            etcd.endpoints = inProcessServer != null || connection != null
+                ? Collections.emptyList()
+                : ofNullable(endpoints).filter(e -> !e.isEmpty()).map(Collections::unmodifiableList).orElseThrow(() -> new IllegalArgumentException("No endpoints"));
             etcd.resolver = ofNullable(resolver).orElse(EtcdConstants.DEFAULT_RESOLVER);
+            etcd.nameResolverFactory = nameResolverFactory;
+            etcd.loadBalancingPolicy = ofNullable(loadBalancingPolicy).orElse(EtcdConstants.ROUND_ROBIN_POLICY);
             etcd.clientOptionsHandler = ofNullable(clientOptionsHandler).orElse(null);
+            etcd.preferNativeTransport = ofNullable(preferNativeTransport).orElse(false);
+            etcd.eventLoopPoolSize = ofNullable(eventLoopPoolSize).orElse(0);
+            etcd.flowControlWindow = ofNullable(flowControlWindow).orElse(0);
+            etcd.maxInboundMessageSize = ofNullable(maxInboundMessageSize).orElse(0);
+            etcd.keepAliveTime = ofNullable(keepAliveUnit).orElse(TimeUnit.MILLISECONDS).toNanos(ofNullable(keepAliveTime).orElse(0L));
+            etcd.keepAliveTimeout = ofNullable(keepAliveUnit).orElse(TimeUnit.MILLISECONDS).toNanos(ofNullable(keepAliveTimeout).orElse(0L));
+            etcd.keepAliveWithoutCalls = ofNullable(keepAliveWithoutCalls).orElse(false);
+            etcd.tcpNoDelay = ofNullable(tcpNoDelay).orElse(true);
+            etcd.sendBufferSize = ofNullable(sendBufferSize).orElse(0);
+            etcd.receiveBufferSize = ofNullable(receiveBufferSize).orElse(0);
+            etcd.channels = Math.max(1, ofNullable(channels).orElse(1));
+            etcd.stripingPolicy = ofNullable(stripingPolicy).orElse(StripingPolicy.LEAST_INFLIGHT);
+            etcd.leaderRouting = ofNullable(leaderRouting).orElse(false);
+            etcd.topologyRefreshInterval = ofNullable(topologyRefreshIntervalUnit).orElse(TimeUnit.MILLISECONDS).toMillis(ofNullable(topologyRefreshInterval).orElse(5000L));
 
             return etcd;
         }
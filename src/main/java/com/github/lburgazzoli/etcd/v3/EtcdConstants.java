@@ -23,6 +23,11 @@ public final class EtcdConstants {
     public static final String DNS_SRV_RESOLVER = "dns+srv";
     public static final String DEFAULT_RESOLVER = STATIC_RESOLVER;
     public static final String AUTHENTICATION_TOKEN = "token";
+    public static final String ROUND_ROBIN_POLICY = "round_robin";
+    public static final String PICK_FIRST_POLICY = "pick_first";
+    public static final int DEFAULT_RANGE_PAGE_SIZE = 1000;
+    public static final int DEFAULT_WRITE_BATCH_SIZE = 128;
+    public static final long DEFAULT_BACKEND_QUOTA = 2L * 1024 * 1024 * 1024;
 
     private EtcdConstants() {
     }
@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import io.grpc.Status;
+
+/**
+ * Receives the measurements taken by the client, set it through
+ * {@link Etcd.Builder#metrics(EtcdMetrics)}. When no metrics are set the
+ * client takes no measurement at all.
+ *
+ * Methods are invoked on gRPC and Vert.x threads so implementations must be
+ * thread safe and must not block. Methods are identified by their full gRPC
+ * name, i.e. etcdserverpb.KV/Range.
+ */
+public interface EtcdMetrics {
+    /**
+     * A call to the given method has been started.
+     */
+    default void callStarted(String method) {
+    }
+
+    /**
+     * A call to the given method completed with the given status, the duration
+     * includes re-authentication, if any.
+     */
+    default void callCompleted(String method, Status.Code code, long durationNanos) {
+    }
+
+    /**
+     * A message of the given serialized size has been sent.
+     */
+    default void messageSent(String method, int bytes) {
+    }
+
+    /**
+     * A message of the given serialized size has been received.
+     */
+    default void messageReceived(String method, int bytes) {
+    }
+
+    /**
+     * An authentication token has been requested.
+     */
+    default void tokenRefreshed(boolean succeeded, long durationNanos) {
+    }
+
+    /**
+     * A response waited for the given time before a thread of the completion
+     * executor picked it up.
+     */
+    default void completionQueued(long durationNanos) {
+    }
+}
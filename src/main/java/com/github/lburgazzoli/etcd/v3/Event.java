@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+/**
+ * Etcd watch event.
+ */
+public class Event {
+    public enum Type {
+        PUT,
+        DELETE
+    }
+
+    private final com.github.lburgazzoli.etcd.v3.api.Event event;
+
+    public Event(com.github.lburgazzoli.etcd.v3.api.Event event) {
+        this.event = event;
+    }
+
+    public Type getType() {
+        return event.getType() == com.github.lburgazzoli.etcd.v3.api.Event.EventType.DELETE
+            ? Type.DELETE
+            : Type.PUT;
+    }
+
+    public KeyValue getKeyValue() {
+        return new KeyValue(event.getKv());
+    }
+
+    public KeyValue getPrevKeyValue() {
+        return new KeyValue(event.getPrevKv());
+    }
+
+    public boolean hasPrevKeyValue() {
+        return event.hasPrevKv();
+    }
+
+    @Override
+    public String toString() {
+        return event.toString();
+    }
+}
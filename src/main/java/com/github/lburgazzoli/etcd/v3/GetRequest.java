@@ -16,29 +16,214 @@
  */
 package com.github.lburgazzoli.etcd.v3;
 
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.github.lburgazzoli.etcd.v3.util.SingleFlight;
 import com.google.protobuf.ByteString;
+import io.grpc.Context;
+import io.grpc.stub.ClientCalls;
 
-class GetRequest extends AbstractRequest<KVGrpc.KVVertxStub, GetResponse> {
+public final class GetRequest extends AbstractRequest<KVGrpc.KVVertxStub, GetResponse> {
     private final ByteString key;
+    private final NearCache nearCache;
+    private final SingleFlight<GetRequest.Flight, GetResponse> singleFlight;
+    private final Hedging hedging;
+    private final Session session;
+    private boolean serializable;
+    private boolean linearizable;
 
     GetRequest(Stub<KVGrpc.KVVertxStub> stub, ByteString key) {
+        this(stub, key, null, null, null, null);
+    }
+
+    GetRequest(
+            Stub<KVGrpc.KVVertxStub> stub,
+            ByteString key,
+            NearCache nearCache,
+            SingleFlight<GetRequest.Flight, GetResponse> singleFlight,
+            Hedging hedging,
+            Session session) {
+
         super(stub);
 
         this.key = key;
+        this.nearCache = nearCache;
+        this.singleFlight = singleFlight;
+        this.hedging = hedging;
+        this.session = session;
+    }
+
+    @Override
+    public GetRequest deadline(long timeout, TimeUnit unit) {
+        super.deadline(timeout, unit);
+        return this;
+    }
+
+    /**
+     * Serves the request from the member it is sent to, without going through
+     * consensus: cheaper but possibly stale. Serializable reads are hedged if
+     * hedging is enabled.
+     */
+    public GetRequest serializable() {
+        this.serializable = true;
+        this.linearizable = false;
+        return this;
+    }
+
+    /**
+     * Forces a linearizable read even if session consistency is enabled.
+     */
+    public GetRequest linearizable() {
+        this.linearizable = true;
+        this.serializable = false;
+        return this;
+    }
+
+    @Override
+    public CompletableFuture<GetResponse> send() {
+        if (nearCache != null && isCached()) {
+            return CompletableFuture.completedFuture(nearCache.range(key));
+        }
+        if (singleFlight != null) {
+            return singleFlight.execute(new Flight(request(), linearizable, timeout()), super::send);
+        }
+
+        return super.send();
+    }
+
+    /**
+     * The near cache can answer unless a linearizable read is required or, with
+     * session consistency, it has not seen the writes of this client yet.
+     */
+    private boolean isCached() {
+        if (!nearCache.isReady() || linearizable) {
+            return false;
+        }
+
+        return session == null || nearCache.getRevision() >= session.revision();
+    }
+
+    @Override
+    protected boolean isIdempotent() {
+        return true;
+    }
+
+    @Override
+    protected ByteString key() {
+        return key;
     }
 
     @Override
     protected void execute(KVGrpc.KVVertxStub stub, CompletableFuture<GetResponse> future) {
-        com.github.lburgazzoli.etcd.v3.api.RangeRequest request =
-            com.github.lburgazzoli.etcd.v3.api.RangeRequest.newBuilder()
-                .setKey(key)
-                .build();
+        if (session != null && !serializable && !linearizable) {
+            final long revision = session.revision();
+
+            // the cancellable context of the attempt, the fallback is issued
+            // in it so cancelling the request cancels the fallback as well
+            final Context context = Context.current();
+
+            // a serializable read is good enough as long as the member it is
+            // served by has seen the writes of this client
+            range(stub, request(true)).whenComplete((r, t) -> {
+                if (t == null && r.getHeader().getRevision() >= revision) {
+                    future.complete(new GetResponse(r));
+                } else {
+                    session.fallback();
+                    context.run(() -> complete(range(stub, request(false)), future));
+                }
+            });
+
+            return;
+        }
+
+        complete(range(stub, request()), future);
+    }
+
+    private CompletableFuture<com.github.lburgazzoli.etcd.v3.api.RangeResponse> range(
+            KVGrpc.KVVertxStub client,
+            com.github.lburgazzoli.etcd.v3.api.RangeRequest request) {
+
+        // serializable reads can be served by any member, a follower is
+        // preferred if the client is aware of the topology
+        final KVGrpc.KVVertxStub stub = request.getSerializable() ? client.withOption(Topology.FOLLOWER, true) : client;
+
+        if (request.getSerializable() && hedging != null) {
+            return hedging.execute(() -> ClientCalls.futureUnaryCall(stub.getChannel().newCall(KVGrpc.getRangeMethod(), stub.getCallOptions()), request));
+        }
+
+        final CompletableFuture<com.github.lburgazzoli.etcd.v3.api.RangeResponse> future = new CompletableFuture<>();
 
         stub.range(request, h -> {
-            future.complete(new GetResponse(h.result()));
+            if (h.succeeded()) {
+                future.complete(h.result());
+            } else {
+                future.completeExceptionally(h.cause());
+            }
+        });
+
+        return future;
+    }
+
+    private static void complete(
+            CompletableFuture<com.github.lburgazzoli.etcd.v3.api.RangeResponse> range,
+            CompletableFuture<GetResponse> future) {
+
+        range.whenComplete((r, t) -> {
+            if (t != null) {
+                future.completeExceptionally(t);
+            } else {
+                future.complete(new GetResponse(r));
+            }
         });
     }
+
+    private com.github.lburgazzoli.etcd.v3.api.RangeRequest request() {
+        return request(serializable);
+    }
+
+    private com.github.lburgazzoli.etcd.v3.api.RangeRequest request(boolean serializable) {
+        return com.github.lburgazzoli.etcd.v3.api.RangeRequest.newBuilder()
+            .setKey(key)
+            .setSerializable(serializable)
+            .build();
+    }
+
+    /**
+     * Identifies the reads that can share a single call: the same range, read
+     * with the same consistency and deadline, so that an explicitly
+     * linearizable read does not join a weaker session read.
+     */
+    static final class Flight {
+        private final com.github.lburgazzoli.etcd.v3.api.RangeRequest request;
+        private final boolean linearizable;
+        private final long timeout;
+
+        Flight(com.github.lburgazzoli.etcd.v3.api.RangeRequest request, boolean linearizable, long timeout) {
+            this.request = request;
+            this.linearizable = linearizable;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Flight)) {
+                return false;
+            }
+
+            final Flight other = (Flight)o;
+
+            return linearizable == other.linearizable && timeout == other.timeout && request.equals(other.request);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(request, linearizable, timeout);
+        }
+    }
 }
@@ -16,19 +16,69 @@
  */
 package com.github.lburgazzoli.etcd.v3;
 
+import java.util.AbstractList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.NoSuchElementException;
+
+import com.github.lburgazzoli.etcd.v3.api.ResponseHeader;
+import com.google.protobuf.ByteString;
 
 public class GetResponse extends AbstractResponse<com.github.lburgazzoli.etcd.v3.api.RangeResponse> {
+    private List<KeyValue> kvs;
 
     public GetResponse(com.github.lburgazzoli.etcd.v3.api.RangeResponse response) {
         super(response, response.getHeader());
     }
 
+    GetResponse(com.github.lburgazzoli.etcd.v3.api.RangeResponse response, ResponseHeader header) {
+        super(response, header);
+    }
+
+    /**
+     * @return a lazy view of the key values, each entry is wrapped on first
+     *         access and then reused
+     */
     public List<KeyValue> getKvs() {
-        return response().getKvsList().stream()
-            .map(KeyValue::new)
-            .collect(Collectors.toList());
+        if (kvs == null) {
+            kvs = new KeyValues(response().getKvsList());
+        }
+
+        return kvs;
+    }
+
+    // **********************************
+    // Indexed access
+    // **********************************
+
+    public int size() {
+        return response().getKvsCount();
+    }
+
+    public ByteString keyAt(int index) {
+        return response().getKvs(index).getKey();
+    }
+
+    public ByteString valueAt(int index) {
+        return response().getKvs(index).getValue();
+    }
+
+    public long modRevisionAt(int index) {
+        return response().getKvs(index).getModRevision();
+    }
+
+    public long createRevisionAt(int index) {
+        return response().getKvs(index).getCreateRevision();
+    }
+
+    public long versionAt(int index) {
+        return response().getKvs(index).getVersion();
+    }
+
+    /**
+     * @return a new cursor positioned before the first key value
+     */
+    public Cursor cursor() {
+        return new Cursor(response());
     }
 
     public boolean getMore() {
@@ -38,4 +88,100 @@ public class GetResponse extends AbstractResponse<com.github.lburgazzoli.etcd.v3
     public long getCount() {
         return response().getCount();
     }
+
+    // **********************************
+    // Helpers
+    // **********************************
+
+    /**
+     * A flyweight over the key values of a response, moving the cursor does
+     * not allocate.
+     */
+    public static final class Cursor {
+        private final com.github.lburgazzoli.etcd.v3.api.RangeResponse response;
+        private com.github.lburgazzoli.etcd.v3.api.KeyValue current;
+        private int index;
+
+        private Cursor(com.github.lburgazzoli.etcd.v3.api.RangeResponse response) {
+            this.response = response;
+            this.index = -1;
+        }
+
+        /**
+         * Moves to the next key value.
+         *
+         * @return false if there are no more key values
+         */
+        public boolean next() {
+            if (index + 1 >= response.getKvsCount()) {
+                current = null;
+                return false;
+            }
+
+            current = response.getKvs(++index);
+            return true;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public ByteString key() {
+            return current().getKey();
+        }
+
+        public ByteString value() {
+            return current().getValue();
+        }
+
+        public long modRevision() {
+            return current().getModRevision();
+        }
+
+        public long createRevision() {
+            return current().getCreateRevision();
+        }
+
+        public long version() {
+            return current().getVersion();
+        }
+
+        public long lease() {
+            return current().getLease();
+        }
+
+        private com.github.lburgazzoli.etcd.v3.api.KeyValue current() {
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+
+            return current;
+        }
+    }
+
+    private static final class KeyValues extends AbstractList<KeyValue> {
+        private final List<com.github.lburgazzoli.etcd.v3.api.KeyValue> kvs;
+        private final KeyValue[] wrappers;
+
+        KeyValues(List<com.github.lburgazzoli.etcd.v3.api.KeyValue> kvs) {
+            this.kvs = kvs;
+            this.wrappers = new KeyValue[kvs.size()];
+        }
+
+        @Override
+        public KeyValue get(int index) {
+            KeyValue kv = wrappers[index];
+            if (kv == null) {
+                kv = new KeyValue(kvs.get(index));
+                wrappers[index] = kv;
+            }
+
+            return kv;
+        }
+
+        @Override
+        public int size() {
+            return wrappers.length;
+        }
+    }
 }
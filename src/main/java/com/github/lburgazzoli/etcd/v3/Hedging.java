@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.vertx.core.Vertx;
+
+/**
+ * Hedges reads: if the first attempt has not completed within a delay, derived
+ * from a percentile of the recent latencies, a second attempt is sent and the
+ * first to succeed wins while the other one is cancelled.
+ *
+ * With the round robin load balancing policy consecutive calls go to different
+ * members, so the second attempt does not wait behind a slow member.
+ *
+ * The latency of every read is recorded from the start of its first attempt,
+ * whichever attempt wins, so hedging does not lower the percentile it is based
+ * on. Second attempts are limited by a token budget: every read earns a
+ * fraction of a token and every hedge spends one, so no more than about one
+ * read in ten is hedged even if the cluster slows down as a whole.
+ */
+final class Hedging {
+    private static final int SAMPLES = 512;
+    private static final int REFRESH = 64;
+    private static final double BUDGET_RATIO = 0.1;
+    private static final double BUDGET_TOKENS = 10;
+
+    private final Vertx vertx;
+    private final double percentile;
+    private final long minDelay;
+    private final long[] samples;
+    private final LongAdder hedged;
+    private int index;
+    private long recorded;
+    private double tokens;
+    private volatile long delay;
+
+    /**
+     * @param percentile the percentile of the latencies to wait for before hedging, i.e. 95
+     * @param minDelay the minimum delay, in milliseconds, also used until enough latencies are recorded
+     */
+    Hedging(Vertx vertx, double percentile, long minDelay) {
+        this.vertx = vertx;
+        this.percentile = percentile;
+        this.minDelay = Math.max(1, minDelay);
+        this.samples = new long[SAMPLES];
+        this.hedged = new LongAdder();
+        this.delay = this.minDelay;
+        this.tokens = BUDGET_TOKENS;
+    }
+
+    <T> CompletableFuture<T> execute(Supplier<ListenableFuture<T>> call) {
+        return new Hedged<>(call).start();
+    }
+
+    /**
+     * @return the delay, in milliseconds, after which a second attempt is sent
+     */
+    long delay() {
+        return delay;
+    }
+
+    /**
+     * @return the number of second attempts sent so far
+     */
+    long hedged() {
+        return hedged.sum();
+    }
+
+    private synchronized void onRequest() {
+        tokens = Math.min(BUDGET_TOKENS, tokens + BUDGET_RATIO);
+    }
+
+    private synchronized boolean acquireToken() {
+        if (tokens < 1) {
+            return false;
+        }
+
+        tokens -= 1;
+        return true;
+    }
+
+    private synchronized void record(long latency) {
+        samples[index] = latency;
+        index = (index + 1) % SAMPLES;
+        recorded++;
+
+        if (recorded >= REFRESH && recorded % REFRESH == 0) {
+            final long[] sorted = Arrays.copyOf(samples, (int)Math.min(recorded, SAMPLES));
+            Arrays.sort(sorted);
+
+            final int at = (int)Math.min(sorted.length - 1, Math.ceil(percentile / 100.0 * sorted.length) - 1);
+            delay = Math.max(minDelay, TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, at)]));
+        }
+    }
+
+    // **********************************
+    // Helpers
+    // **********************************
+
+    private final class Hedged<T> {
+        private final Supplier<ListenableFuture<T>> call;
+        private final CompletableFuture<T> answer;
+        private final List<ListenableFuture<T>> attempts;
+        private io.grpc.Context context;
+        private long start;
+        private long timer;
+        private boolean done;
+
+        Hedged(Supplier<ListenableFuture<T>> call) {
+            this.call = call;
+            this.answer = new CompletableFuture<>();
+            this.attempts = new ArrayList<>(2);
+            this.timer = -1;
+        }
+
+        synchronized CompletableFuture<T> start() {
+            // the hedge is sent from a timer, in the context of the request so
+            // that cancelling the request cancels it too
+            context = io.grpc.Context.current();
+            start = System.nanoTime();
+
+            onRequest();
+            attempt();
+
+            if (!done) {
+                timer = vertx.setTimer(delay, id -> hedge());
+            }
+
+            return answer;
+        }
+
+        private synchronized void hedge() {
+            timer = -1;
+
+            if (!done && !context.isCancelled() && acquireToken()) {
+                hedged.increment();
+                context.run(this::attempt);
+            }
+        }
+
+        private void attempt() {
+            final ListenableFuture<T> attempt = call.get();
+
+            attempts.add(attempt);
+
+            Futures.addCallback(attempt, new FutureCallback<T>() {
+                @Override
+                public void onSuccess(T result) {
+                    onCompleted(attempt, result, null);
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    onCompleted(attempt, null, throwable);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        private void onCompleted(ListenableFuture<T> attempt, T result, Throwable throwable) {
+            final List<ListenableFuture<T>> losers;
+
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+
+                attempts.remove(attempt);
+
+                if (throwable != null && !attempts.isEmpty()) {
+                    // the other attempt may still succeed
+                    return;
+                }
+
+                if (timer != -1) {
+                    vertx.cancelTimer(timer);
+                    timer = -1;
+                }
+
+                done = true;
+                losers = new ArrayList<>(attempts);
+                attempts.clear();
+            }
+
+            if (throwable != null) {
+                answer.completeExceptionally(throwable);
+            } else {
+                record(System.nanoTime() - start);
+                answer.complete(result);
+            }
+
+            // cancelled attempts are notified right away and ignored as done is set
+            for (ListenableFuture<T> loser : losers) {
+                loser.cancel(true);
+            }
+        }
+    }
+}
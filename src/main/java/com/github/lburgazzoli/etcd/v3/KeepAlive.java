@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import io.netty.util.Timeout;
+
+/**
+ * A lease kept alive over the LeaseKeepAlive stream shared by all the leases of
+ * an {@link Etcd} client.
+ */
+public final class KeepAlive implements AutoCloseable {
+    private final Lease lease;
+    private final long leaseId;
+    private final KeepAliveListener listener;
+    private volatile long ttl;
+    private volatile long deadline;
+    private volatile boolean expired;
+    private volatile boolean closed;
+
+    // guarded by lease
+    long sent;
+    Timeout timeout;
+
+    KeepAlive(Lease lease, long leaseId, KeepAliveListener listener) {
+        this.lease = lease;
+        this.leaseId = leaseId;
+        this.listener = listener;
+        this.ttl = 0;
+        this.deadline = 0;
+        this.expired = false;
+        this.closed = false;
+    }
+
+    public long getLeaseId() {
+        return leaseId;
+    }
+
+    /**
+     * @return the TTL returned by the last refresh, in seconds, 0 until the
+     *         first refresh
+     */
+    public long getTTL() {
+        return ttl;
+    }
+
+    /**
+     * @return the time, in milliseconds since the epoch, the lease is known to
+     *         be alive until
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public boolean isExpired() {
+        return expired;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            lease.cancel(this);
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    // **********************************
+    // Lease callbacks
+    // **********************************
+
+    void onKeepAlive(long ttl, long deadline) {
+        this.ttl = ttl;
+        this.deadline = deadline;
+
+        listener.onKeepAlive(leaseId, ttl);
+    }
+
+    void onExpired() {
+        this.expired = true;
+        this.closed = true;
+
+        listener.onExpired(leaseId);
+    }
+}
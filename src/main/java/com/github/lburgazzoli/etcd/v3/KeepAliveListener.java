@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+/**
+ * Receives the notifications about a lease kept alive by a {@link KeepAlive}.
+ */
+public interface KeepAliveListener {
+    /**
+     * Invoked every time the lease is refreshed.
+     *
+     * @param leaseId the lease id
+     * @param ttl the new TTL of the lease, in seconds
+     */
+    default void onKeepAlive(long leaseId, long ttl) {
+    }
+
+    /**
+     * Invoked when the lease is expired or has been lost because it could not
+     * be refreshed before its TTL elapsed, no more notifications follow.
+     *
+     * @param leaseId the lease id
+     */
+    default void onExpired(long leaseId) {
+    }
+}
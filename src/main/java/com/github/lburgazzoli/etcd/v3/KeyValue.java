@@ -16,24 +16,116 @@
  */
 package com.github.lburgazzoli.etcd.v3;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import com.google.protobuf.ByteString;
+
 /**
  * Etcd key value pair.
+ *
+ * Keys and values are exposed as views over the underlying protobuf message,
+ * the string accessors decode them as UTF-8 on first use and cache the result.
  */
 public class KeyValue {
     private com.github.lburgazzoli.etcd.v3.api.KeyValue kv;
+    private String key;
+    private String value;
 
     public KeyValue(com.github.lburgazzoli.etcd.v3.api.KeyValue kv) {
         this.kv = kv;
     }
 
+    // **********************************
+    // Key
+    // **********************************
+
     public CharSequence getKey() {
-        return new String(kv.getKey().toByteArray());
+        if (key == null) {
+            key = kv.getKey().toStringUtf8();
+        }
+
+        return key;
+    }
+
+    public ByteString getKeyBytes() {
+        return kv.getKey();
     }
 
+    /**
+     * @return a read-only view of the key, no copy is made
+     */
+    public ByteBuffer getKeyBuffer() {
+        return kv.getKey().asReadOnlyByteBuffer();
+    }
+
+    // **********************************
+    // Value
+    // **********************************
+
     public CharSequence getValue() {
-        return new String(kv.getValue().toByteArray());
+        if (value == null) {
+            value = kv.getValue().toStringUtf8();
+        }
+
+        return value;
+    }
+
+    public ByteString getValueBytes() {
+        return kv.getValue();
     }
 
+    /**
+     * @return a read-only view of the value, no copy is made
+     */
+    public ByteBuffer getValueBuffer() {
+        return kv.getValue().asReadOnlyByteBuffer();
+    }
+
+    public int getValueSize() {
+        return kv.getValue().size();
+    }
+
+    /**
+     * Writes the value to the given stream without copying it.
+     */
+    public void writeValueTo(OutputStream out) throws IOException {
+        kv.getValue().writeTo(out);
+    }
+
+    /**
+     * Writes the value to the given channel without copying it.
+     *
+     * A non blocking channel may not accept the whole value: the write stops
+     * as soon as the channel accepts no more bytes and the remaining ones can
+     * be written later from {@link #getValueBuffer()} positioned at the
+     * returned count.
+     *
+     * @return the number of bytes written
+     */
+    public int writeValueTo(WritableByteChannel channel) throws IOException {
+        int written = 0;
+
+        for (ByteBuffer buffer : kv.getValue().asReadOnlyByteBufferList()) {
+            while (buffer.hasRemaining()) {
+                final int count = channel.write(buffer);
+                if (count == 0) {
+                    return written;
+                }
+
+                written += count;
+            }
+        }
+
+        return written;
+    }
+
+    // **********************************
+    // Properties
+    // **********************************
+
     public long getCreateRevision() {
         return kv.getCreateRevision();
     }
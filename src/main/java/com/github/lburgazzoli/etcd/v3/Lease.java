@@ -0,0 +1,264 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.api.LeaseGrpc;
+import com.github.lburgazzoli.etcd.v3.api.LeaseKeepAliveRequest;
+import com.github.lburgazzoli.etcd.v3.api.LeaseKeepAliveResponse;
+import io.grpc.Channel;
+import io.grpc.stub.StreamObserver;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps alive all the leases of a client over a single LeaseKeepAlive stream.
+ *
+ * Every lease is refreshed every third of its TTL, the refreshes are scheduled
+ * on a single timer wheel shared by all the leases. A lease that could not be
+ * refreshed before its TTL elapsed, or that the server reports as expired, is
+ * notified as expired and dropped. If the stream fails, it is re-established
+ * and all the leases are refreshed at once.
+ */
+final class Lease implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Lease.class);
+    private static final long RETRY_DELAY = 1000;
+    private static final long MIN_RECONNECT_DELAY = 100;
+    private static final long MAX_RECONNECT_DELAY = 5000;
+
+    private final LeaseGrpc.LeaseStub stub;
+    private final HashedWheelTimer timer;
+    private final Map<Long, KeepAlive> keepAlives;
+    private StreamObserver<LeaseKeepAliveRequest> stream;
+    private Observer observer;
+    private Timeout reconnect;
+    private long reconnectDelay;
+    private boolean closed;
+
+    Lease(Channel channel) {
+        this.stub = LeaseGrpc.newStub(channel);
+        this.timer = new HashedWheelTimer(r -> {
+            Thread thread = new Thread(r, "etcd-lease-timer");
+            thread.setDaemon(true);
+            return thread;
+        }, 100, TimeUnit.MILLISECONDS);
+        this.keepAlives = new HashMap<>();
+        this.reconnectDelay = MIN_RECONNECT_DELAY;
+        this.closed = false;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            if (stream != null) {
+                stream.onCompleted();
+                stream = null;
+                observer = null;
+            }
+
+            keepAlives.clear();
+        }
+
+        timer.stop();
+    }
+
+    // **********************************
+    // Keep alive
+    // **********************************
+
+    synchronized KeepAlive keepAlive(long leaseId, KeepAliveListener listener) {
+        if (closed) {
+            throw new IllegalStateException("Lease is closed");
+        }
+        if (keepAlives.containsKey(leaseId)) {
+            throw new IllegalArgumentException("Lease " + leaseId + " is already kept alive");
+        }
+
+        final KeepAlive keepAlive = new KeepAlive(this, leaseId, listener);
+        keepAlives.put(leaseId, keepAlive);
+
+        if (stream != null) {
+            refresh(keepAlive);
+        } else if (reconnect == null) {
+            connect();
+        } else {
+            schedule(keepAlive, RETRY_DELAY);
+        }
+
+        return keepAlive;
+    }
+
+    synchronized void cancel(KeepAlive keepAlive) {
+        keepAlives.remove(keepAlive.getLeaseId(), keepAlive);
+
+        if (keepAlive.timeout != null) {
+            keepAlive.timeout.cancel();
+            keepAlive.timeout = null;
+        }
+    }
+
+    // **********************************
+    // Stream
+    // **********************************
+
+    private void connect() {
+        LOGGER.debug("Open lease keep alive stream ({} leases)", keepAlives.size());
+
+        observer = new Observer();
+        stream = stub.leaseKeepAlive(observer);
+
+        for (KeepAlive keepAlive : keepAlives.values()) {
+            refresh(keepAlive);
+        }
+    }
+
+    private void refresh(KeepAlive keepAlive) {
+        keepAlive.sent = System.currentTimeMillis();
+
+        stream.onNext(LeaseKeepAliveRequest.newBuilder().setID(keepAlive.getLeaseId()).build());
+
+        // until the response comes, retry at the same pace the lease would be
+        // refreshed at
+        schedule(keepAlive, keepAlive.getTTL() > 0 ? refreshDelay(keepAlive.getTTL()) : RETRY_DELAY);
+    }
+
+    private void schedule(KeepAlive keepAlive, long delay) {
+        if (keepAlive.timeout != null) {
+            keepAlive.timeout.cancel();
+        }
+
+        keepAlive.timeout = timer.newTimeout(t -> onTimeout(keepAlive), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void onTimeout(KeepAlive keepAlive) {
+        synchronized (this) {
+            if (closed || keepAlive.isClosed() || keepAlives.get(keepAlive.getLeaseId()) != keepAlive) {
+                return;
+            }
+
+            final long deadline = keepAlive.getDeadline();
+
+            if (deadline == 0 || System.currentTimeMillis() < deadline) {
+                if (stream != null) {
+                    refresh(keepAlive);
+                } else {
+                    schedule(keepAlive, RETRY_DELAY);
+                }
+
+                return;
+            }
+
+            LOGGER.debug("Lease {} lost, not refreshed before its deadline", keepAlive.getLeaseId());
+
+            keepAlives.remove(keepAlive.getLeaseId());
+        }
+
+        keepAlive.onExpired();
+    }
+
+    private void onNext(Observer source, LeaseKeepAliveResponse response) {
+        final KeepAlive keepAlive;
+        final long deadline;
+
+        synchronized (this) {
+            if (source != observer) {
+                return;
+            }
+
+            reconnectDelay = MIN_RECONNECT_DELAY;
+            keepAlive = keepAlives.get(response.getID());
+
+            if (keepAlive == null) {
+                return;
+            }
+
+            if (response.getTTL() <= 0) {
+                LOGGER.debug("Lease {} expired", response.getID());
+
+                cancel(keepAlive);
+                deadline = 0;
+            } else {
+                deadline = keepAlive.sent + TimeUnit.SECONDS.toMillis(response.getTTL());
+                schedule(keepAlive, refreshDelay(response.getTTL()));
+            }
+        }
+
+        if (deadline == 0) {
+            keepAlive.onExpired();
+        } else {
+            keepAlive.onKeepAlive(response.getTTL(), deadline);
+        }
+    }
+
+    private synchronized void onError(Observer source, Throwable throwable) {
+        if (source != observer) {
+            return;
+        }
+
+        stream = null;
+        observer = null;
+
+        if (closed || keepAlives.isEmpty()) {
+            return;
+        }
+
+        LOGGER.debug("Lease keep alive stream interrupted, reconnect in {} ms", reconnectDelay, throwable);
+
+        reconnect = timer.newTimeout(t -> reconnect(), reconnectDelay, TimeUnit.MILLISECONDS);
+        reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+    }
+
+    private synchronized void reconnect() {
+        reconnect = null;
+
+        if (!closed && stream == null && !keepAlives.isEmpty()) {
+            connect();
+        }
+    }
+
+    private static long refreshDelay(long ttl) {
+        return Math.max(TimeUnit.SECONDS.toMillis(ttl) / 3, 1);
+    }
+
+    private final class Observer implements StreamObserver<LeaseKeepAliveResponse> {
+        @Override
+        public void onNext(LeaseKeepAliveResponse response) {
+            Lease.this.onNext(this, response);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            Lease.this.onError(this, throwable);
+        }
+
+        @Override
+        public void onCompleted() {
+            Lease.this.onError(this, null);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.api.LeaseGrpc;
+
+public final class LeaseGrantRequest extends AbstractRequest<LeaseGrpc.LeaseVertxStub, LeaseGrantResponse> {
+    private final long ttl;
+
+    LeaseGrantRequest(Stub<LeaseGrpc.LeaseVertxStub> stub, long ttl) {
+        super(stub);
+
+        this.ttl = ttl;
+    }
+
+    @Override
+    public LeaseGrantRequest deadline(long timeout, TimeUnit unit) {
+        super.deadline(timeout, unit);
+        return this;
+    }
+
+    @Override
+    protected void execute(LeaseGrpc.LeaseVertxStub stub, CompletableFuture<LeaseGrantResponse> future) {
+        com.github.lburgazzoli.etcd.v3.api.LeaseGrantRequest request =
+            com.github.lburgazzoli.etcd.v3.api.LeaseGrantRequest.newBuilder()
+                .setTTL(ttl)
+                .build();
+
+        stub.leaseGrant(request, h -> {
+            if (h.succeeded()) {
+                future.complete(new LeaseGrantResponse(h.result()));
+            } else {
+                future.completeExceptionally(h.cause());
+            }
+        });
+    }
+}
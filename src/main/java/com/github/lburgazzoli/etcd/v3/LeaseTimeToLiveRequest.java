@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.api.LeaseGrpc;
+
+public final class LeaseTimeToLiveRequest extends AbstractRequest<LeaseGrpc.LeaseVertxStub, LeaseTimeToLiveResponse> {
+    private final long leaseId;
+    private final boolean keys;
+
+    LeaseTimeToLiveRequest(Stub<LeaseGrpc.LeaseVertxStub> stub, long leaseId, boolean keys) {
+        super(stub);
+
+        this.leaseId = leaseId;
+        this.keys = keys;
+    }
+
+    @Override
+    public LeaseTimeToLiveRequest deadline(long timeout, TimeUnit unit) {
+        super.deadline(timeout, unit);
+        return this;
+    }
+
+    @Override
+    protected void execute(LeaseGrpc.LeaseVertxStub stub, CompletableFuture<LeaseTimeToLiveResponse> future) {
+        com.github.lburgazzoli.etcd.v3.api.LeaseTimeToLiveRequest request =
+            com.github.lburgazzoli.etcd.v3.api.LeaseTimeToLiveRequest.newBuilder()
+                .setID(leaseId)
+                .setKeys(keys)
+                .build();
+
+        stub.leaseTimeToLive(request, h -> {
+            if (h.succeeded()) {
+                future.complete(new LeaseTimeToLiveResponse(h.result()));
+            } else {
+                future.completeExceptionally(h.cause());
+            }
+        });
+    }
+
+    @Override
+    protected boolean isIdempotent() {
+        return true;
+    }
+}
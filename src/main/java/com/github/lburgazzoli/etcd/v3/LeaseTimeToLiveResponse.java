@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.protobuf.ByteString;
+
+public final class LeaseTimeToLiveResponse extends AbstractResponse<com.github.lburgazzoli.etcd.v3.api.LeaseTimeToLiveResponse> {
+
+    public LeaseTimeToLiveResponse(com.github.lburgazzoli.etcd.v3.api.LeaseTimeToLiveResponse response) {
+        super(response, response.getHeader());
+    }
+
+    // ***********************************************
+    // Properties
+    // ***********************************************
+
+    public long getId() {
+        return response().getID();
+    }
+
+    /**
+     * @return the remaining TTL in seconds, -1 if the lease is expired
+     */
+    public long getTTL() {
+        return response().getTTL();
+    }
+
+    public long getGrantedTTL() {
+        return response().getGrantedTTL();
+    }
+
+    public List<CharSequence> getKeys() {
+        return response().getKeysList().stream()
+            .map(ByteString::toStringUtf8)
+            .collect(Collectors.toList());
+    }
+}
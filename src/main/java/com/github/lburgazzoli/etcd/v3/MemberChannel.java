@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+
+/**
+ * Balances the calls of a client over one channel per cluster member.
+ *
+ * A channel has a single authority, used by TLS to check the host name of the
+ * server certificate, so members with different host names need their own
+ * channel. Calls go round robin to the members whose channel is ready, or to
+ * the ones that are not failing if none is ready yet.
+ */
+final class MemberChannel extends ManagedChannel {
+    private final ManagedChannel[] channels;
+    private final AtomicInteger next;
+
+    MemberChannel(ManagedChannel[] channels) {
+        this.channels = channels;
+        this.next = new AtomicInteger();
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+        return channels[select()].newCall(method, callOptions);
+    }
+
+    @Override
+    public String authority() {
+        return channels[0].authority();
+    }
+
+    /**
+     * @return the index of the channel the next call goes to
+     */
+    int select() {
+        final int start = Math.floorMod(next.getAndIncrement(), channels.length);
+
+        int index = start;
+        int best = StripedChannel.rank(channels[start].getState(false));
+
+        for (int i = 1; i < channels.length && best > 0; i++) {
+            final int candidate = (start + i) % channels.length;
+            final int rank = StripedChannel.rank(channels[candidate].getState(false));
+
+            if (rank < best) {
+                best = rank;
+                index = candidate;
+            }
+        }
+
+        return index;
+    }
+
+    // **********************************
+    // Lifecycle
+    // **********************************
+
+    /**
+     * The state of the most healthy channel, so the client is reported as
+     * ready as soon as a member is.
+     */
+    @Override
+    public ConnectivityState getState(boolean requestConnection) {
+        ConnectivityState result = ConnectivityState.SHUTDOWN;
+
+        for (ManagedChannel channel : channels) {
+            final ConnectivityState state = channel.getState(requestConnection);
+            if (StripedChannel.rank(state) < StripedChannel.rank(result)) {
+                result = state;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void notifyWhenStateChanged(ConnectivityState source, Runnable callback) {
+        final AtomicBoolean notified = new AtomicBoolean();
+        final Runnable notifier = () -> {
+            if (notified.compareAndSet(false, true)) {
+                callback.run();
+            }
+        };
+
+        for (ManagedChannel channel : channels) {
+            channel.notifyWhenStateChanged(channel.getState(false), notifier);
+        }
+
+        // a channel may have changed state before the listeners were in place
+        if (getState(false) != source) {
+            notifier.run();
+        }
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        for (ManagedChannel channel : channels) {
+            channel.shutdown();
+        }
+
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (ManagedChannel channel : channels) {
+            if (!channel.isShutdown()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (ManagedChannel channel : channels) {
+            if (!channel.isTerminated()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        for (ManagedChannel channel : channels) {
+            channel.shutdownNow();
+        }
+
+        return this;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        for (ManagedChannel channel : channels) {
+            if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * Reports the calls made through the channel to {@link EtcdMetrics}, it is
+ * installed only when metrics are set.
+ */
+final class MetricsInterceptor implements ClientInterceptor {
+    private final EtcdMetrics metrics;
+
+    MetricsInterceptor(EtcdMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        final String name = method.getFullMethodName();
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+            private long start;
+
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                start = System.nanoTime();
+                metrics.callStarted(name);
+
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                    @Override
+                    public void onMessage(RespT message) {
+                        if (message instanceof MessageLite) {
+                            metrics.messageReceived(name, ((MessageLite)message).getSerializedSize());
+                        }
+
+                        super.onMessage(message);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        metrics.callCompleted(name, status.getCode(), System.nanoTime() - start);
+                        super.onClose(status, trailers);
+                    }
+                },
+                headers);
+            }
+
+            @Override
+            public void sendMessage(ReqT message) {
+                if (message instanceof MessageLite) {
+                    // the size is memoized by protobuf, serializing the message does not compute it again
+                    metrics.messageSent(name, ((MessageLite)message).getSerializedSize());
+                }
+
+                super.sendMessage(message);
+            }
+        };
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+import com.github.lburgazzoli.etcd.v3.api.Event;
+import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.github.lburgazzoli.etcd.v3.api.RangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.RangeResponse;
+import com.github.lburgazzoli.etcd.v3.api.ResponseHeader;
+import com.github.lburgazzoli.etcd.v3.util.ByteStrings;
+import com.google.protobuf.ByteString;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A client side copy of all the keys under a prefix.
+ *
+ * The cache is seeded with a paginated range pinned to the revision of the first
+ * page and then kept current by a watcher starting from the revision after it.
+ * Once ready, {@link Etcd#get(String)} requests for keys under the prefix are
+ * answered locally, so reads are as fresh as {@link #getRevision()}.
+ *
+ * If the watcher is canceled or fails, the cache is not ready until it has
+ * been seeded again and a new watcher started from the new revision, failed
+ * attempts are retried with an increasing delay.
+ */
+public final class NearCache implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NearCache.class);
+    private static final long MIN_RELOAD_DELAY = 100;
+    private static final long MAX_RELOAD_DELAY = 5000;
+
+    private final Stub<KVGrpc.KVVertxStub> stub;
+    private final Watch watch;
+    private final Vertx vertx;
+    private final ByteString prefix;
+    private final ByteString prefixEnd;
+    private final int pageSize;
+    private final Consumer<NearCache> onClose;
+    private volatile ConcurrentNavigableMap<ByteString, com.github.lburgazzoli.etcd.v3.api.KeyValue> entries;
+    private volatile Watcher watcher;
+    private volatile long revision;
+    private volatile boolean ready;
+    private volatile boolean closed;
+    private long reloadDelay;
+    private long reloadTimer;
+
+    NearCache(Stub<KVGrpc.KVVertxStub> stub, Watch watch, Vertx vertx, ByteString prefix, int pageSize, Consumer<NearCache> onClose) {
+        this.stub = stub;
+        this.watch = watch;
+        this.vertx = vertx;
+        this.prefix = prefix;
+        this.prefixEnd = ByteStrings.prefixEnd(prefix);
+        this.pageSize = pageSize;
+        this.onClose = onClose;
+        this.entries = new ConcurrentSkipListMap<>(ByteStrings.COMPARATOR);
+        this.revision = 0;
+        this.ready = false;
+        this.closed = false;
+        this.reloadDelay = MIN_RELOAD_DELAY;
+        this.reloadTimer = -1;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            ready = false;
+
+            synchronized (this) {
+                if (reloadTimer != -1) {
+                    vertx.cancelTimer(reloadTimer);
+                    reloadTimer = -1;
+                }
+            }
+
+            if (watcher != null) {
+                watcher.close();
+            }
+
+            onClose.accept(this);
+        }
+    }
+
+    // **********************************
+    // Properties
+    // **********************************
+
+    /**
+     * The revision the cache is known to be current to.
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * If the cache has been seeded and is kept current by its watcher.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean contains(ByteString key) {
+        return key.startsWith(prefix);
+    }
+
+    // **********************************
+    // Lookup
+    // **********************************
+
+    /**
+     * @return the cached value of the given key or null
+     */
+    public KeyValue get(String key) {
+        com.github.lburgazzoli.etcd.v3.api.KeyValue kv = entries.get(ByteString.copyFromUtf8(key));
+        return kv != null ? new KeyValue(kv) : null;
+    }
+
+    /**
+     * @return all the cached keys starting with the given prefix, in key order
+     */
+    public List<KeyValue> getPrefix(String prefix) {
+        final ByteString from = ByteString.copyFromUtf8(prefix);
+        final ByteString to = ByteStrings.prefixEnd(from);
+        final NavigableMap<ByteString, com.github.lburgazzoli.etcd.v3.api.KeyValue> view = ByteStrings.ALL_KEYS.equals(to)
+            ? entries.tailMap(from, true)
+            : entries.subMap(from, true, to, false);
+
+        final List<KeyValue> answer = new ArrayList<>(view.size());
+        for (com.github.lburgazzoli.etcd.v3.api.KeyValue kv : view.values()) {
+            answer.add(new KeyValue(kv));
+        }
+
+        return answer;
+    }
+
+    /**
+     * Answers a single key range from the cache, the header revision is the one
+     * the cache is current to.
+     */
+    GetResponse range(ByteString key) {
+        final long current = revision;
+        final com.github.lburgazzoli.etcd.v3.api.KeyValue kv = entries.get(key);
+        final RangeResponse.Builder response = RangeResponse.newBuilder()
+            .setHeader(ResponseHeader.newBuilder().setRevision(current));
+
+        if (kv != null) {
+            response.addKvs(kv);
+            response.setCount(1);
+        }
+
+        return new GetResponse(response.build());
+    }
+
+    // **********************************
+    // Sync
+    // **********************************
+
+    CompletableFuture<NearCache> start() {
+        final CompletableFuture<NearCache> answer = new CompletableFuture<>();
+        final ConcurrentNavigableMap<ByteString, com.github.lburgazzoli.etcd.v3.api.KeyValue> seed = new ConcurrentSkipListMap<>(ByteStrings.COMPARATOR);
+
+        load(prefix, 0, seed).whenComplete((r, t) -> {
+            if (t != null) {
+                answer.completeExceptionally(t);
+                return;
+            }
+            if (closed) {
+                answer.completeExceptionally(new IllegalStateException("NearCache is closed"));
+                return;
+            }
+
+            this.entries = seed;
+            this.revision = r;
+            this.watcher = new WatchRequest(watch, prefix)
+                .prefix()
+                .startRevision(r + 1)
+                .progressNotify(true)
+                .listen(this::onWatchResponse, this::onWatchError);
+            this.ready = true;
+
+            LOGGER.debug("NearCache for prefix {} seeded with {} keys at revision {}", prefix.toStringUtf8(), seed.size(), r);
+
+            answer.complete(this);
+        });
+
+        return answer;
+    }
+
+    /**
+     * Loads a page of keys starting from the given key, all the pages after the
+     * first one are read at the revision of the first page.
+     */
+    private CompletableFuture<Long> load(ByteString from, long revision, ConcurrentNavigableMap<ByteString, com.github.lburgazzoli.etcd.v3.api.KeyValue> seed) {
+        final RangeRequest request = RangeRequest.newBuilder()
+            .setKey(from)
+            .setRangeEnd(prefixEnd)
+            .setLimit(pageSize)
+            .setRevision(revision)
+            .build();
+
+        return stub.<RangeResponse, Exception>execute((s, f) -> s.range(request, h -> {
+            if (h.succeeded()) {
+                f.complete(h.result());
+            } else {
+                f.completeExceptionally(h.cause());
+            }
+        })).thenCompose(response -> {
+            final long rev = revision != 0 ? revision : response.getHeader().getRevision();
+
+            for (com.github.lburgazzoli.etcd.v3.api.KeyValue kv : response.getKvsList()) {
+                seed.put(kv.getKey(), kv);
+            }
+
+            if (response.getMore() && response.getKvsCount() > 0) {
+                ByteString last = response.getKvs(response.getKvsCount() - 1).getKey();
+                return load(last.concat(ByteString.copyFrom(new byte[] { 0 })), rev, seed);
+            }
+
+            return CompletableFuture.completedFuture(rev);
+        });
+    }
+
+    private void onWatchResponse(WatchResponse response) {
+        if (response.isCanceled()) {
+            LOGGER.debug("NearCache watcher for prefix {} canceled ({}), reload", prefix.toStringUtf8(), response.getCancelReason());
+            reload();
+            return;
+        }
+
+        long last = response.getHeader().getRevision();
+
+        for (Event event : response.response().getEventsList()) {
+            if (event.getType() == Event.EventType.DELETE) {
+                entries.remove(event.getKv().getKey());
+            } else {
+                entries.put(event.getKv().getKey(), event.getKv());
+            }
+
+            last = event.getKv().getModRevision();
+        }
+
+        if (last > revision) {
+            revision = last;
+        }
+    }
+
+    private void onWatchError(Throwable throwable) {
+        LOGGER.warn("NearCache watcher for prefix {} failed, reload", prefix.toStringUtf8(), throwable);
+        reload();
+    }
+
+    private void reload() {
+        ready = false;
+
+        if (!closed) {
+            start().whenComplete((r, t) -> {
+                if (t != null) {
+                    LOGGER.warn("Failed to reload NearCache for prefix {}", prefix.toStringUtf8(), t);
+                    scheduleReload();
+                } else {
+                    synchronized (this) {
+                        reloadDelay = MIN_RELOAD_DELAY;
+                    }
+                }
+            });
+        }
+    }
+
+    private synchronized void scheduleReload() {
+        if (!closed && reloadTimer == -1) {
+            reloadTimer = vertx.setTimer(reloadDelay, this::onReloadTimer);
+            reloadDelay = Math.min(reloadDelay * 2, MAX_RELOAD_DELAY);
+        }
+    }
+
+    private void onReloadTimer(long timerId) {
+        synchronized (this) {
+            if (reloadTimer != timerId) {
+                return;
+            }
+
+            reloadTimer = -1;
+        }
+
+        reload();
+    }
+}
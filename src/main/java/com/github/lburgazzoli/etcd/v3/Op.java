@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import com.github.lburgazzoli.etcd.v3.api.DeleteRangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.RangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.RequestOp;
+import com.github.lburgazzoli.etcd.v3.util.ByteStrings;
+import com.google.protobuf.ByteString;
+
+/**
+ * An operation executed by a {@link TxnRequest}.
+ */
+public final class Op {
+    private final RequestOp op;
+
+    private Op(RequestOp op) {
+        this.op = op;
+    }
+
+    RequestOp toRequestOp() {
+        return op;
+    }
+
+    @Override
+    public String toString() {
+        return op.toString();
+    }
+
+    // **********************************
+    // Factories
+    // **********************************
+
+    public static Op put(String key, String value) {
+        return put(key, value, 0);
+    }
+
+    public static Op put(String key, String value, long lease) {
+        return new Op(
+            RequestOp.newBuilder()
+                .setRequestPut(
+                    com.github.lburgazzoli.etcd.v3.api.PutRequest.newBuilder()
+                        .setKey(ByteString.copyFromUtf8(key))
+                        .setValue(ByteString.copyFromUtf8(value))
+                        .setLease(lease))
+                .build()
+        );
+    }
+
+    public static Op get(String key) {
+        return get(ByteString.copyFromUtf8(key), ByteString.EMPTY);
+    }
+
+    public static Op getPrefix(String prefix) {
+        ByteString key = ByteString.copyFromUtf8(prefix);
+        return get(key, ByteStrings.prefixEnd(key));
+    }
+
+    public static Op delete(String key) {
+        return delete(ByteString.copyFromUtf8(key), ByteString.EMPTY);
+    }
+
+    public static Op deletePrefix(String prefix) {
+        ByteString key = ByteString.copyFromUtf8(prefix);
+        return delete(key, ByteStrings.prefixEnd(key));
+    }
+
+    private static Op get(ByteString key, ByteString rangeEnd) {
+        return new Op(
+            RequestOp.newBuilder()
+                .setRequestRange(
+                    RangeRequest.newBuilder()
+                        .setKey(key)
+                        .setRangeEnd(rangeEnd))
+                .build()
+        );
+    }
+
+    private static Op delete(ByteString key, ByteString rangeEnd) {
+        return new Op(
+            RequestOp.newBuilder()
+                .setRequestDeleteRange(
+                    DeleteRangeRequest.newBuilder()
+                        .setKey(key)
+                        .setRangeEnd(rangeEnd))
+                .build()
+        );
+    }
+}
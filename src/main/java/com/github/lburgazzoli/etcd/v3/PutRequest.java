@@ -17,30 +17,53 @@
 package com.github.lburgazzoli.etcd.v3;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
 import com.google.protobuf.ByteString;
 
-class PutRequest extends AbstractRequest<KVGrpc.KVVertxStub, PutResponse> {
+public final class PutRequest extends AbstractRequest<KVGrpc.KVVertxStub, PutResponse> {
     private final ByteString key;
     private final ByteString value;
+    private final long lease;
+    private final WriteBatcher batcher;
 
     PutRequest(Stub<KVGrpc.KVVertxStub> stub, ByteString key, ByteString value) {
-       super(stub);
+        this(stub, key, value, 0, null);
+    }
+
+    PutRequest(Stub<KVGrpc.KVVertxStub> stub, ByteString key, ByteString value, long lease, WriteBatcher batcher) {
+        super(stub);
 
         this.key = key;
         this.value = value;
+        this.lease = lease;
+        this.batcher = batcher;
     }
 
     @Override
-    protected void execute(KVGrpc.KVVertxStub stub, CompletableFuture<PutResponse> future) {
-        com.github.lburgazzoli.etcd.v3.api.PutRequest request =
-            com.github.lburgazzoli.etcd.v3.api.PutRequest.newBuilder()
-                .setKey(key)
-                .setValue(value)
-                .build();
+    public PutRequest deadline(long timeout, TimeUnit unit) {
+        super.deadline(timeout, unit);
+        return this;
+    }
+
+    @Override
+    public CompletableFuture<PutResponse> send() {
+        if (batcher != null) {
+            return batcher.put(request(), timeout());
+        }
+
+        return super.send();
+    }
 
-        stub.put(request, h -> {
+    @Override
+    protected ByteString key() {
+        return key;
+    }
+
+    @Override
+    protected void execute(KVGrpc.KVVertxStub stub, CompletableFuture<PutResponse> future) {
+        stub.put(request(), h -> {
             if (h.succeeded()) {
                 future.complete(new PutResponse(h.result()));
             } else {
@@ -48,4 +71,12 @@ class PutRequest extends AbstractRequest<KVGrpc.KVVertxStub, PutResponse> {
             }
         });
     }
+
+    private com.github.lburgazzoli.etcd.v3.api.PutRequest request() {
+        return com.github.lburgazzoli.etcd.v3.api.PutRequest.newBuilder()
+            .setKey(key)
+            .setValue(value)
+            .setLease(lease)
+            .build();
+    }
 }
@@ -16,12 +16,18 @@
  */
 package com.github.lburgazzoli.etcd.v3;
 
+import com.github.lburgazzoli.etcd.v3.api.ResponseHeader;
+
 public final class PutResponse extends AbstractResponse<com.github.lburgazzoli.etcd.v3.api.PutResponse> {
 
     public PutResponse(com.github.lburgazzoli.etcd.v3.api.PutResponse response) {
         super(response, response.getHeader());
     }
 
+    PutResponse(com.github.lburgazzoli.etcd.v3.api.PutResponse response, ResponseHeader header) {
+        super(response, header);
+    }
+
     // ***********************************************
     // Properties
     // ***********************************************
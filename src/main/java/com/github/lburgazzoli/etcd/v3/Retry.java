@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.vertx.core.Vertx;
+
+/**
+ * Decides if and when a failed idempotent call is retried: the delay between
+ * attempts grows exponentially with full jitter and retries are scheduled on
+ * the event loop.
+ *
+ * Retries are throttled by a budget shared by all the calls of the client,
+ * modeled after gRPC's retry throttling: every failure takes a token, every
+ * success gives back a fraction of it, and retries are allowed only as long as
+ * more than half of the tokens are left, so a server which is down is not
+ * flooded by retries.
+ */
+final class Retry {
+    private static final int SCALE = 1000;
+
+    private final Vertx vertx;
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final int maxTokens;
+    private final int tokenRatio;
+    private final AtomicInteger tokens;
+    private final LongAdder retried;
+    private final LongAdder throttled;
+
+    /**
+     * @param maxAttempts the max number of attempts, the first one included
+     * @param initialBackoff the max delay, in milliseconds, before the first retry
+     * @param maxBackoff the max delay, in milliseconds, between attempts
+     * @param maxTokens the size of the retry budget
+     * @param tokenRatio the tokens given back by a successful call
+     */
+    Retry(Vertx vertx, int maxAttempts, long initialBackoff, long maxBackoff, int maxTokens, double tokenRatio) {
+        this.vertx = vertx;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = Math.max(1, initialBackoff);
+        this.maxBackoff = Math.max(this.initialBackoff, maxBackoff);
+        this.maxTokens = maxTokens * SCALE;
+        this.tokenRatio = (int)(tokenRatio * SCALE);
+        this.tokens = new AtomicInteger(this.maxTokens);
+        this.retried = new LongAdder();
+        this.throttled = new LongAdder();
+    }
+
+    Vertx vertx() {
+        return vertx;
+    }
+
+    /**
+     * @return the number of attempts retried so far
+     */
+    long retried() {
+        return retried.sum();
+    }
+
+    /**
+     * @return the number of retries denied because the budget was exhausted
+     */
+    long throttled() {
+        return throttled.sum();
+    }
+
+    void onSuccess() {
+        int current;
+        while ((current = tokens.get()) < maxTokens) {
+            if (tokens.compareAndSet(current, Math.min(maxTokens, current + tokenRatio))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param attempts the number of attempts made so far
+     * @param deadline the deadline of the call, if any
+     * @return the delay, in milliseconds, before the next attempt, or -1 if the
+     *         call must not be retried
+     */
+    long backoff(int attempts, Throwable throwable, Deadline deadline) {
+        if (!isRetryable(throwable)) {
+            return -1;
+        }
+
+        int current;
+        do {
+            current = tokens.get();
+        } while (current > 0 && !tokens.compareAndSet(current, Math.max(0, current - SCALE)));
+
+        if (attempts >= maxAttempts) {
+            return -1;
+        }
+        if (current - SCALE <= maxTokens / 2) {
+            throttled.increment();
+            return -1;
+        }
+
+        final long cap = Math.min(maxBackoff, initialBackoff << Math.min(attempts - 1, 30));
+        final long delay = ThreadLocalRandom.current().nextLong(1, cap + 1);
+
+        if (deadline != null && deadline.timeRemaining(TimeUnit.MILLISECONDS) <= delay) {
+            return -1;
+        }
+
+        retried.increment();
+
+        return delay;
+    }
+
+    private static boolean isRetryable(Throwable throwable) {
+        final Status status = Status.fromThrowable(throwable);
+
+        switch (status.getCode()) {
+        case UNAVAILABLE:
+            return true;
+        case RESOURCE_EXHAUSTED:
+            // exceeding a message size limit is reported the same way but
+            // fails again on every attempt
+            return !isMessageTooLarge(status);
+        default:
+            return false;
+        }
+    }
+
+    private static boolean isMessageTooLarge(Status status) {
+        final String description = status.getDescription();
+
+        return description != null
+            && (description.contains("exceeds maximum size") || description.contains("larger than max"));
+    }
+}
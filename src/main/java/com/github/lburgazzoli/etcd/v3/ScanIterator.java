@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.github.lburgazzoli.etcd.v3.api.RangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.RangeResponse;
+import com.google.protobuf.ByteString;
+
+/**
+ * Pull iterator over the pages of a {@link ScanRequest}.
+ *
+ * Pages are fetched one after the other, starting right after the last key of
+ * the previous page, and no more than the configured number of pages is buffered
+ * ahead of the consumer.
+ */
+public final class ScanIterator implements Iterator<KeyValue>, AutoCloseable {
+    private static final ByteString ZERO = ByteString.copyFrom(new byte[] { 0 });
+
+    private final Stub<KVGrpc.KVVertxStub> stub;
+    private final RangeRequest request;
+    private final int prefetch;
+    private final Deque<RangeResponse> pages;
+    private ByteString nextKey;
+    private long revision;
+    private CompletableFuture<RangeResponse> inflight;
+    private Throwable failure;
+    private boolean done;
+    private RangeResponse page;
+    private int index;
+
+    ScanIterator(Stub<KVGrpc.KVVertxStub> stub, RangeRequest request, int prefetch) {
+        this.stub = stub;
+        this.request = request;
+        this.prefetch = prefetch;
+        this.pages = new ArrayDeque<>(prefetch);
+        this.nextKey = request.getKey();
+        this.revision = request.getRevision();
+        this.done = false;
+        this.index = 0;
+
+        synchronized (this) {
+            fetch();
+        }
+    }
+
+    /**
+     * The revision the scan reads at, 0 until the first page is received.
+     */
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (page != null && index < page.getKvsCount()) {
+            return true;
+        }
+
+        page = nextPage();
+        index = 0;
+
+        return page != null;
+    }
+
+    @Override
+    public KeyValue next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return new KeyValue(page.getKvs(index++));
+    }
+
+    @Override
+    public synchronized void close() {
+        done = true;
+        pages.clear();
+
+        if (inflight != null) {
+            inflight.cancel(false);
+            inflight = null;
+        }
+
+        notifyAll();
+    }
+
+    // **********************************
+    // Helpers
+    // **********************************
+
+    private synchronized RangeResponse nextPage() {
+        try {
+            while (true) {
+                if (!pages.isEmpty()) {
+                    RangeResponse next = pages.poll();
+                    fetch();
+
+                    if (next.getKvsCount() > 0) {
+                        return next;
+                    }
+                } else if (failure != null) {
+                    throw new CompletionException(failure);
+                } else if (done && inflight == null) {
+                    return null;
+                } else {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private void fetch() {
+        if (done || inflight != null || failure != null || pages.size() >= prefetch) {
+            return;
+        }
+
+        final RangeRequest pageRequest = request.toBuilder()
+            .setKey(nextKey)
+            .setRevision(revision)
+            .build();
+
+        final CompletableFuture<RangeResponse> future = stub.execute((s, f) -> s.withOption(Topology.FOLLOWER, pageRequest.getSerializable()).range(pageRequest, h -> {
+            if (h.succeeded()) {
+                f.complete(h.result());
+            } else {
+                f.completeExceptionally(h.cause());
+            }
+        }), 0, true, null);
+
+        inflight = future;
+        future.whenComplete((r, t) -> onPage(future, r, t));
+    }
+
+    private synchronized void onPage(CompletableFuture<RangeResponse> future, RangeResponse response, Throwable throwable) {
+        if (inflight != future) {
+            return;
+        }
+
+        inflight = null;
+
+        if (throwable != null) {
+            failure = throwable;
+        } else {
+            if (revision == 0) {
+                revision = response.getHeader().getRevision();
+            }
+
+            pages.add(response);
+
+            if (response.getMore() && response.getKvsCount() > 0) {
+                nextKey = response.getKvs(response.getKvsCount() - 1).getKey().concat(ZERO);
+                fetch();
+            } else {
+                done = true;
+            }
+        }
+
+        notifyAll();
+    }
+}
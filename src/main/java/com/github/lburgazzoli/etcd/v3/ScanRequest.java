@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.github.lburgazzoli.etcd.v3.api.RangeRequest;
+import com.github.lburgazzoli.etcd.v3.util.ByteStrings;
+import com.google.protobuf.ByteString;
+
+/**
+ * A range scan that pages through the keys in [key, rangeEnd), all the pages are
+ * read at the revision of the first one so the scan is consistent.
+ */
+public final class ScanRequest {
+    private final Stub<KVGrpc.KVVertxStub> stub;
+    private final ByteString key;
+    private ByteString rangeEnd;
+    private long revision;
+    private int pageSize;
+    private int prefetch;
+    private boolean keysOnly;
+    private boolean serializable;
+
+    ScanRequest(Stub<KVGrpc.KVVertxStub> stub, ByteString key) {
+        this.stub = stub;
+        this.key = key;
+        this.rangeEnd = ByteString.EMPTY;
+        this.revision = 0;
+        this.pageSize = EtcdConstants.DEFAULT_RANGE_PAGE_SIZE;
+        this.prefetch = 1;
+        this.keysOnly = false;
+        this.serializable = false;
+    }
+
+    // **********************************
+    // Options
+    // **********************************
+
+    public ScanRequest rangeEnd(String rangeEnd) {
+        this.rangeEnd = ByteString.copyFromUtf8(rangeEnd);
+        return this;
+    }
+
+    /**
+     * Scan all the keys starting with the key of this request.
+     */
+    public ScanRequest prefix() {
+        this.rangeEnd = ByteStrings.prefixEnd(key);
+        return this;
+    }
+
+    /**
+     * Scan all the keys greater than or equal to the key of this request.
+     */
+    public ScanRequest fromKey() {
+        this.rangeEnd = ByteStrings.ALL_KEYS;
+        return this;
+    }
+
+    /**
+     * The revision to read at, if not set the scan reads at the revision of the
+     * first page.
+     */
+    public ScanRequest revision(long revision) {
+        this.revision = revision;
+        return this;
+    }
+
+    /**
+     * The max number of keys to fetch per range request.
+     */
+    public ScanRequest pageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be greater than zero");
+        }
+
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * The max number of pages fetched ahead of the consumer.
+     */
+    public ScanRequest prefetch(int prefetch) {
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch must be greater than zero");
+        }
+
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    public ScanRequest keysOnly(boolean keysOnly) {
+        this.keysOnly = keysOnly;
+        return this;
+    }
+
+    /**
+     * Serves the pages from the members they are sent to, followers preferred,
+     * without going through consensus: cheaper but the first page may be stale,
+     * and a page sent to a member that has not applied the revision of the scan
+     * yet fails.
+     */
+    public ScanRequest serializable() {
+        this.serializable = true;
+        return this;
+    }
+
+    // **********************************
+    // Scan
+    // **********************************
+
+    /**
+     * Starts the scan, the returned iterator blocks while waiting for pages so
+     * it must not be consumed from an event loop thread.
+     */
+    public ScanIterator iterator() {
+        RangeRequest request = RangeRequest.newBuilder()
+            .setKey(key)
+            .setRangeEnd(rangeEnd)
+            .setRevision(revision)
+            .setLimit(pageSize)
+            .setKeysOnly(keysOnly)
+            .setSerializable(serializable)
+            .build();
+
+        return new ScanIterator(stub, request, prefetch);
+    }
+
+    /**
+     * Starts the scan, the stream must be closed if not fully consumed.
+     */
+    public Stream<KeyValue> stream() {
+        ScanIterator iterator = iterator();
+
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+            false
+        ).onClose(iterator::close);
+    }
+}
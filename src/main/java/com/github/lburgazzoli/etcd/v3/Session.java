@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.lburgazzoli.etcd.v3.api.DeleteRangeResponse;
+import com.github.lburgazzoli.etcd.v3.api.LeaseRevokeResponse;
+import com.github.lburgazzoli.etcd.v3.api.PutResponse;
+import com.github.lburgazzoli.etcd.v3.api.ResponseOp;
+import com.github.lburgazzoli.etcd.v3.api.TxnResponse;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+
+/**
+ * Tracks the highest revision created by the writes of this client so reads
+ * can be served by any member that has caught up with it, which gives
+ * read-your-writes consistency without a linearizable read.
+ *
+ * The revision is collected from the responses flowing through the channel,
+ * so writes are tracked whatever request, batch or txn they come from.
+ */
+final class Session implements ClientInterceptor {
+    private final AtomicLong revision;
+    private final LongAdder fallbacks;
+
+    Session() {
+        this.revision = new AtomicLong();
+        this.fallbacks = new LongAdder();
+    }
+
+    /**
+     * @return the highest revision created by a write of this client
+     */
+    long revision() {
+        return revision.get();
+    }
+
+    /**
+     * @return the number of serializable reads that were behind the session
+     *         and have been retried as linearizable ones
+     */
+    long fallbacks() {
+        return fallbacks.sum();
+    }
+
+    void fallback() {
+        fallbacks.increment();
+    }
+
+    void observe(long rev) {
+        long current;
+        while (rev > (current = revision.get())) {
+            if (revision.compareAndSet(current, rev)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * A txn only creates a revision if the branch it executed wrote something,
+     * the header of a read-only one carries the revision of the store.
+     */
+    private static boolean isWrite(TxnResponse response) {
+        for (ResponseOp op : response.getResponsesList()) {
+            if (op.getResponseCase() == ResponseOp.ResponseCase.RESPONSE_PUT
+                || op.getResponseCase() == ResponseOp.ResponseCase.RESPONSE_DELETE_RANGE) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                    @Override
+                    public void onMessage(RespT message) {
+                        if (message instanceof PutResponse) {
+                            observe(((PutResponse)message).getHeader().getRevision());
+                        } else if (message instanceof DeleteRangeResponse) {
+                            observe(((DeleteRangeResponse)message).getHeader().getRevision());
+                        } else if (message instanceof TxnResponse && isWrite((TxnResponse)message)) {
+                            observe(((TxnResponse)message).getHeader().getRevision());
+                        } else if (message instanceof LeaseRevokeResponse) {
+                            observe(((LeaseRevokeResponse)message).getHeader().getRevision());
+                        }
+
+                        super.onMessage(message);
+                    }
+                },
+                headers);
+            }
+        };
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * Spreads the calls of a client over a number of channels, each one with its
+ * own connections, so the client is not bound to the max concurrent streams of
+ * a single HTTP/2 connection and large responses do not hold up small calls.
+ *
+ * Calls carrying a {@link #KEY} hint are routed by key hash if the policy is
+ * {@link StripingPolicy#KEY_HASH}, all the other ones go to the channel with
+ * the least calls in flight.
+ */
+final class StripedChannel extends ManagedChannel {
+    static final CallOptions.Key<Integer> KEY = CallOptions.Key.create("etcd.stripe.key");
+
+    private final ManagedChannel[] channels;
+    private final StripingPolicy policy;
+    private final AtomicIntegerArray inflight;
+
+    StripedChannel(ManagedChannel[] channels, StripingPolicy policy) {
+        this.channels = channels;
+        this.policy = policy;
+        this.inflight = new AtomicIntegerArray(channels.length);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+        final Integer key = callOptions.getOption(KEY);
+        final int index = key != null && policy == StripingPolicy.KEY_HASH
+            ? Math.floorMod(key, channels.length)
+            : leastInflight();
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(channels[index].newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                inflight.incrementAndGet(index);
+
+                try {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            inflight.decrementAndGet(index);
+                            super.onClose(status, trailers);
+                        }
+                    },
+                    headers);
+                } catch (RuntimeException e) {
+                    inflight.decrementAndGet(index);
+                    throw e;
+                }
+            }
+        };
+    }
+
+    @Override
+    public String authority() {
+        return channels[0].authority();
+    }
+
+    /**
+     * @return the number of calls in flight on the channel at the given index
+     */
+    int inflight(int index) {
+        return inflight.get(index);
+    }
+
+    private int leastInflight() {
+        int index = 0;
+        int min = Integer.MAX_VALUE;
+
+        for (int i = 0; i < channels.length; i++) {
+            final int value = inflight.get(i);
+            if (value < min) {
+                min = value;
+                index = i;
+            }
+        }
+
+        return index;
+    }
+
+    // **********************************
+    // Lifecycle
+    // **********************************
+
+    /**
+     * The state of the least healthy channel, so the striped channel is only
+     * reported as ready once all of its channels are.
+     */
+    @Override
+    public ConnectivityState getState(boolean requestConnection) {
+        ConnectivityState result = ConnectivityState.READY;
+
+        for (ManagedChannel channel : channels) {
+            final ConnectivityState state = channel.getState(requestConnection);
+            if (rank(state) > rank(result)) {
+                result = state;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void notifyWhenStateChanged(ConnectivityState source, Runnable callback) {
+        final AtomicBoolean notified = new AtomicBoolean();
+        final Runnable notifier = () -> {
+            if (notified.compareAndSet(false, true)) {
+                callback.run();
+            }
+        };
+
+        for (ManagedChannel channel : channels) {
+            channel.notifyWhenStateChanged(channel.getState(false), notifier);
+        }
+
+        // a channel may have changed state before the listeners were in place
+        if (getState(false) != source) {
+            notifier.run();
+        }
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        for (ManagedChannel channel : channels) {
+            channel.shutdown();
+        }
+
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (ManagedChannel channel : channels) {
+            if (!channel.isShutdown()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (ManagedChannel channel : channels) {
+            if (!channel.isTerminated()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        for (ManagedChannel channel : channels) {
+            channel.shutdownNow();
+        }
+
+        return this;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        for (ManagedChannel channel : channels) {
+            if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static int rank(ConnectivityState state) {
+        switch (state) {
+        case READY:
+            return 0;
+        case IDLE:
+            return 1;
+        case CONNECTING:
+            return 2;
+        case TRANSIENT_FAILURE:
+            return 3;
+        default:
+            return 4;
+        }
+    }
+}
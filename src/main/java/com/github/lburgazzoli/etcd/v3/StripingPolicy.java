@@ -0,0 +1,32 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+/**
+ * How calls are spread across the channels of a client.
+ */
+public enum StripingPolicy {
+    /**
+     * Each call goes to the channel with the least calls in flight.
+     */
+    LEAST_INFLIGHT,
+    /**
+     * Calls about a key always go to the same channel so they are kept in
+     * order, the other ones go to the channel with the least calls in flight.
+     */
+    KEY_HASH
+}
@@ -16,25 +16,236 @@
  */
 package com.github.lburgazzoli.etcd.v3;
 
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
+import com.google.protobuf.ByteString;
+import io.grpc.Deadline;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
 public class Stub<S extends io.grpc.stub.AbstractStub<S>> {
+    private final CompletionMode completionMode;
     private final Executor executor;
+    private final long defaultDeadline;
+    private final Retry retry;
+    private final ConcurrencyLimiter limiter;
+    private final boolean keyStriping;
     private final S stub;
 
     public Stub(S stub, Executor executor) {
+        this(stub, CompletionMode.EXECUTOR, executor, 0, null, null, false);
+    }
+
+    /**
+     * @param defaultDeadline the deadline, in nanoseconds, of the calls that do
+     *                        not set one, 0 for none
+     * @param retry the policy used to retry idempotent calls, null for none
+     * @param limiter the limiter of the concurrent calls, null for none
+     * @param keyStriping if calls are routed to the channels by key
+     */
+    Stub(S stub, CompletionMode completionMode, Executor executor, long defaultDeadline, Retry retry, ConcurrencyLimiter limiter, boolean keyStriping) {
         this.stub = stub;
+        this.completionMode = completionMode;
         this.executor = executor;
+        this.defaultDeadline = defaultDeadline;
+        this.retry = retry;
+        this.limiter = limiter;
+        this.keyStriping = keyStriping;
     }
 
     public <R, E extends Exception> CompletableFuture<R> execute(BiConsumer<S, CompletableFuture<R>> consumer) {
-        CompletableFuture<R> future = new CompletableFuture<>();
+        return execute(consumer, 0, false, null);
+    }
+
+    /**
+     * Executes a call, cancelling the returned future cancels the call.
+     *
+     * @param deadline the deadline of the call, in nanoseconds, 0 to use the
+     *                 default one, it is shared by all the attempts
+     * @param idempotent if the call can be safely retried
+     * @param key the key the call is about, if any, used to keep the calls
+     *            about the same key on the same channel
+     */
+    public <R, E extends Exception> CompletableFuture<R> execute(BiConsumer<S, CompletableFuture<R>> consumer, long deadline, boolean idempotent, ByteString key) {
+        final long timeout = deadline > 0 ? deadline : defaultDeadline;
+        final Deadline callDeadline = timeout > 0 ? Deadline.after(timeout, TimeUnit.NANOSECONDS) : null;
+
+        S stub = callDeadline != null ? this.stub.withDeadline(callDeadline) : this.stub;
+        if (keyStriping && key != null) {
+            stub = stub.withOption(StripedChannel.KEY, key.hashCode());
+        }
+
+        final Call<R> call = new Call<>(stub, consumer, idempotent ? retry : null, callDeadline);
+
+        final CompletableFuture<R> answer;
+
+        switch (completionMode) {
+        case DIRECT:
+            call.attempt();
+            answer = call.future;
+            break;
+        case CONTEXT:
+            final Context context = Vertx.currentContext();
+            call.attempt();
+            answer = context != null ? onContext(call.future, context) : call.future;
+            break;
+        default:
+            call.attempt();
+            answer = call.future.thenApplyAsync(Function.identity(), executor);
+            break;
+        }
+
+        answer.whenComplete((r, t) -> {
+            if (t instanceof CancellationException) {
+                call.cancel();
+            }
+        });
+
+        return answer;
+    }
+
+    private static <R> CompletableFuture<R> onContext(CompletableFuture<R> future, Context context) {
+        final CompletableFuture<R> answer = new CompletableFuture<>();
+
+        future.whenComplete((r, t) -> context.runOnContext(v -> {
+            if (t != null) {
+                answer.completeExceptionally(t);
+            } else {
+                answer.complete(r);
+            }
+        }));
+
+        return answer;
+    }
+
+    // **********************************
+    // Helpers
+    // **********************************
+
+    /**
+     * Runs the attempts of a call, each one in its own cancellable gRPC
+     * context so the calls it starts can be cancelled.
+     */
+    private final class Call<R> {
+        private final S stub;
+        private final BiConsumer<S, CompletableFuture<R>> consumer;
+        private final Retry retry;
+        private final Deadline deadline;
+        private final CompletableFuture<R> future;
+        private final Runnable task;
+        private io.grpc.Context.CancellableContext context;
+        private int attempts;
+        private long timer;
+        private boolean cancelled;
+
+        Call(S stub, BiConsumer<S, CompletableFuture<R>> consumer, Retry retry, Deadline deadline) {
+            this.stub = stub;
+            this.consumer = consumer;
+            this.retry = retry;
+            this.deadline = deadline;
+            this.future = new CompletableFuture<>();
+            this.task = this::run;
+            this.timer = -1;
+        }
+
+        void attempt() {
+            if (limiter == null) {
+                run();
+                return;
+            }
+
+            try {
+                limiter.acquire(task);
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void run() {
+            final io.grpc.Context.CancellableContext context;
+
+            synchronized (this) {
+                if (cancelled) {
+                    if (limiter != null) {
+                        limiter.release();
+                    }
+
+                    return;
+                }
+
+                this.attempts++;
+                this.timer = -1;
+                this.context = context = io.grpc.Context.current().withCancellation();
+            }
+
+            final CompletableFuture<R> result = new CompletableFuture<>();
+            final long start = System.nanoTime();
+            final io.grpc.Context previous = context.attach();
+
+            try {
+                consumer.accept(stub, result);
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            } finally {
+                context.detach(previous);
+            }
+
+            result.whenComplete((r, t) -> {
+                if (limiter != null) {
+                    limiter.release(System.nanoTime() - start, t);
+                }
+
+                onCompleted(r, t);
+            });
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+
+            if (timer != -1) {
+                retry.vertx().cancelTimer(timer);
+                timer = -1;
+            }
+            if (context != null) {
+                context.cancel(new CancellationException());
+            }
+            if (limiter != null) {
+                // frees the slot of the queue, if still waiting for a permit
+                limiter.cancel(task);
+            }
+
+            future.cancel(false);
+        }
+
+        private void onCompleted(R response, Throwable throwable) {
+            // the context of the attempt is not cancelled here: unary responses
+            // are delivered before the call is closed and cancelling it would
+            // race with the close
+            if (throwable == null) {
+                if (retry != null) {
+                    retry.onSuccess();
+                }
+
+                future.complete(response);
+                return;
+            }
+
+            synchronized (this) {
+                final long delay = retry != null && !cancelled ? retry.backoff(attempts, throwable, deadline) : -1;
 
-        consumer.accept(stub, future);
+                if (delay > 0) {
+                    timer = retry.vertx().setTimer(delay, id -> attempt());
+                    return;
+                }
+            }
 
-        return future.thenApplyAsync(Function.identity(), executor);
+            future.completeExceptionally(throwable);
+        }
     }
 }
@@ -0,0 +1,477 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.lburgazzoli.etcd.v3.api.ClusterGrpc;
+import com.github.lburgazzoli.etcd.v3.api.DeleteRangeResponse;
+import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.github.lburgazzoli.etcd.v3.api.MaintenanceGrpc;
+import com.github.lburgazzoli.etcd.v3.api.Member;
+import com.github.lburgazzoli.etcd.v3.api.MemberListRequest;
+import com.github.lburgazzoli.etcd.v3.api.MemberListResponse;
+import com.github.lburgazzoli.etcd.v3.api.PutResponse;
+import com.github.lburgazzoli.etcd.v3.api.RangeResponse;
+import com.github.lburgazzoli.etcd.v3.api.ResponseHeader;
+import com.github.lburgazzoli.etcd.v3.api.StatusRequest;
+import com.github.lburgazzoli.etcd.v3.api.StatusResponse;
+import com.github.lburgazzoli.etcd.v3.api.TxnResponse;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Routes the calls of a client according to the role of the cluster members:
+ * writes go straight to the leader, instead of being forwarded to it by the
+ * member they reach, and serializable reads go to the follower with the least
+ * calls in flight. Everything else, and any call that cannot be routed, goes
+ * through the balanced channel.
+ *
+ * Every endpoint gets its own channel and the topology is learnt by polling
+ * the status of each one and the member list of the cluster. The poll is run
+ * at once when a response carries a raft term higher than the known one, as
+ * the leader may have changed.
+ */
+final class Topology extends ManagedChannel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Topology.class);
+    private static final CallOptions.Key<Integer> MEMBER = CallOptions.Key.create("etcd.topology.member");
+    private static final Set<String> WRITES = new HashSet<>(Arrays.asList(
+        KVGrpc.getPutMethod().getFullMethodName(),
+        KVGrpc.getDeleteRangeMethod().getFullMethodName(),
+        KVGrpc.getTxnMethod().getFullMethodName()));
+
+    static final CallOptions.Key<Boolean> FOLLOWER = CallOptions.Key.createWithDefault("etcd.topology.follower", false);
+
+    private final ManagedChannel balanced;
+    private final Node[] nodes;
+    private volatile Node leader;
+    private long leaderId;
+    private long raftTerm;
+    private boolean refreshing;
+    private Channel channel;
+    private long interval;
+    private Vertx vertx;
+    private long timer;
+
+    Topology(ManagedChannel balanced, List<String> endpoints, List<ManagedChannel> channels) {
+        this.balanced = balanced;
+        this.nodes = new Node[channels.size()];
+        this.timer = -1;
+
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node(endpoints.get(i), channels.get(i));
+        }
+    }
+
+    /**
+     * @return the id of the leader, 0 if not known yet
+     */
+    synchronized long leaderId() {
+        return leaderId;
+    }
+
+    /**
+     * @return the highest raft term seen so far
+     */
+    synchronized long raftTerm() {
+        return raftTerm;
+    }
+
+    // **********************************
+    // Routing
+    // **********************************
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+        final Node node = route(method, callOptions);
+        final Channel target = node != null ? node.channel : balanced;
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(target.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                if (node != null) {
+                    node.inflight.incrementAndGet();
+                }
+
+                try {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                        @Override
+                        public void onMessage(RespT message) {
+                            if (message instanceof PutResponse) {
+                                observe(((PutResponse)message).getHeader());
+                            } else if (message instanceof DeleteRangeResponse) {
+                                observe(((DeleteRangeResponse)message).getHeader());
+                            } else if (message instanceof TxnResponse) {
+                                observe(((TxnResponse)message).getHeader());
+                            } else if (message instanceof RangeResponse) {
+                                observe(((RangeResponse)message).getHeader());
+                            }
+
+                            super.onMessage(message);
+                        }
+
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            if (node != null) {
+                                node.inflight.decrementAndGet();
+                            }
+
+                            super.onClose(status, trailers);
+                        }
+                    },
+                    headers);
+                } catch (RuntimeException e) {
+                    if (node != null) {
+                        node.inflight.decrementAndGet();
+                    }
+
+                    throw e;
+                }
+            }
+        };
+    }
+
+    @Override
+    public String authority() {
+        return balanced.authority();
+    }
+
+    private Node route(MethodDescriptor<?, ?> method, CallOptions callOptions) {
+        final Integer index = callOptions.getOption(MEMBER);
+        if (index != null) {
+            return nodes[index];
+        }
+
+        if (WRITES.contains(method.getFullMethodName())) {
+            final Node node = leader;
+            return node != null && node.isAvailable() ? node : null;
+        }
+
+        if (callOptions.getOption(FOLLOWER)) {
+            final Node current = leader;
+
+            Node answer = null;
+            for (Node node : nodes) {
+                if (node != current && node.isAvailable() && (answer == null || node.isLighterThan(answer))) {
+                    answer = node;
+                }
+            }
+
+            return answer;
+        }
+
+        return null;
+    }
+
+    // **********************************
+    // Monitoring
+    // **********************************
+
+    /**
+     * Starts polling the topology through the given channel, usually this one
+     * with the client interceptors on top of it.
+     *
+     * @param interval the poll interval, in milliseconds
+     */
+    synchronized void monitor(Vertx vertx, Channel channel, long interval) {
+        if (this.channel != null) {
+            return;
+        }
+
+        this.vertx = vertx;
+        this.channel = channel;
+        this.interval = interval;
+        this.timer = vertx.setPeriodic(interval, id -> refresh());
+
+        refresh();
+    }
+
+    private void observe(ResponseHeader header) {
+        synchronized (this) {
+            if (header.getRaftTerm() <= raftTerm) {
+                return;
+            }
+
+            LOGGER.debug("Raft term changed from {} to {}, refresh the topology", raftTerm, header.getRaftTerm());
+            raftTerm = header.getRaftTerm();
+        }
+
+        refresh();
+    }
+
+    private void refresh() {
+        final Channel channel;
+
+        synchronized (this) {
+            if (refreshing || this.channel == null) {
+                return;
+            }
+
+            refreshing = true;
+            channel = this.channel;
+        }
+
+        final List<CompletableFuture<StatusResponse>> statuses = new ArrayList<>(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            statuses.add(status(channel, i));
+        }
+
+        final CompletableFuture<MemberListResponse> members = memberList(channel);
+
+        CompletableFuture.allOf(statuses.toArray(new CompletableFuture[0]))
+            .exceptionally(t -> null)
+            .thenCombine(members.handle((r, t) -> r), (v, r) -> r)
+            .whenComplete((r, t) -> onRefreshed(r));
+    }
+
+    private CompletableFuture<StatusResponse> status(Channel channel, int index) {
+        final CompletableFuture<StatusResponse> future = new CompletableFuture<>();
+        final Node node = nodes[index];
+
+        MaintenanceGrpc.newVertxStub(channel)
+            .withOption(MEMBER, index)
+            .withDeadlineAfter(interval, TimeUnit.MILLISECONDS)
+            .status(StatusRequest.getDefaultInstance(), h -> {
+                if (h.succeeded()) {
+                    node.onStatus(h.result());
+                    future.complete(h.result());
+                } else {
+                    LOGGER.debug("Unable to get the status of {}", node.endpoint, h.cause());
+                    node.reachable = false;
+                    future.completeExceptionally(h.cause());
+                }
+            });
+
+        return future;
+    }
+
+    private CompletableFuture<MemberListResponse> memberList(Channel channel) {
+        final CompletableFuture<MemberListResponse> future = new CompletableFuture<>();
+
+        ClusterGrpc.newVertxStub(channel)
+            .withDeadlineAfter(interval, TimeUnit.MILLISECONDS)
+            .memberList(MemberListRequest.getDefaultInstance(), h -> {
+                if (h.succeeded()) {
+                    future.complete(h.result());
+                } else {
+                    LOGGER.debug("Unable to get the members of the cluster", h.cause());
+                    future.completeExceptionally(h.cause());
+                }
+            });
+
+        return future;
+    }
+
+    private void onRefreshed(MemberListResponse members) {
+        // a member removed from the cluster is not routed to, if the list is
+        // not available the last known membership is kept
+        if (members != null) {
+            final Set<Long> ids = new HashSet<>();
+            for (Member member : members.getMembersList()) {
+                ids.add(member.getID());
+            }
+
+            for (Node node : nodes) {
+                node.member = ids.contains(node.id);
+            }
+        }
+
+        // the reachable member with the highest term knows the current leader
+        StatusResponse latest = null;
+        for (Node node : nodes) {
+            final StatusResponse status = node.status;
+            if (node.reachable && status != null && (latest == null || status.getRaftTerm() > latest.getRaftTerm())) {
+                latest = status;
+            }
+        }
+
+        synchronized (this) {
+            refreshing = false;
+
+            if (latest != null) {
+                Node current = null;
+                for (Node node : nodes) {
+                    if (node.id == latest.getLeader()) {
+                        current = node;
+                    }
+                }
+
+                if (leaderId != latest.getLeader()) {
+                    LOGGER.debug("Leader changed from {} to {} (term {})", leaderId, latest.getLeader(), latest.getRaftTerm());
+                }
+
+                leader = current;
+                leaderId = latest.getLeader();
+                raftTerm = Math.max(raftTerm, latest.getRaftTerm());
+            }
+        }
+    }
+
+    // **********************************
+    // Lifecycle
+    // **********************************
+
+    @Override
+    public ConnectivityState getState(boolean requestConnection) {
+        return balanced.getState(requestConnection);
+    }
+
+    @Override
+    public void notifyWhenStateChanged(ConnectivityState source, Runnable callback) {
+        balanced.notifyWhenStateChanged(source, callback);
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        synchronized (this) {
+            if (timer != -1) {
+                vertx.cancelTimer(timer);
+                timer = -1;
+            }
+
+            channel = null;
+        }
+
+        balanced.shutdown();
+        for (Node node : nodes) {
+            node.channel.shutdown();
+        }
+
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (Node node : nodes) {
+            if (!node.channel.isShutdown()) {
+                return false;
+            }
+        }
+
+        return balanced.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (Node node : nodes) {
+            if (!node.channel.isTerminated()) {
+                return false;
+            }
+        }
+
+        return balanced.isTerminated();
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        shutdown();
+
+        balanced.shutdownNow();
+        for (Node node : nodes) {
+            node.channel.shutdownNow();
+        }
+
+        return this;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        for (Node node : nodes) {
+            if (!node.channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+
+        return balanced.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    // **********************************
+    // Helpers
+    // **********************************
+
+    /**
+     * The channel to a single endpoint and what is known about the member
+     * behind it.
+     */
+    private static final class Node {
+        final String endpoint;
+        final ManagedChannel channel;
+        final AtomicInteger inflight;
+        volatile StatusResponse status;
+        volatile long id;
+        volatile boolean reachable;
+        volatile boolean member;
+
+        Node(String endpoint, ManagedChannel channel) {
+            this.endpoint = endpoint;
+            this.channel = channel;
+            this.inflight = new AtomicInteger();
+        }
+
+        void onStatus(StatusResponse response) {
+            status = response;
+            id = response.getHeader().getMemberId();
+            reachable = true;
+        }
+
+        /**
+         * Compares the load of the nodes: calls in flight first, then database
+         * size as a larger database means slower reads.
+         */
+        boolean isLighterThan(Node other) {
+            final int inflight = this.inflight.get();
+            final int otherInflight = other.inflight.get();
+            if (inflight != otherInflight) {
+                return inflight < otherInflight;
+            }
+
+            final StatusResponse status = this.status;
+            final StatusResponse otherStatus = other.status;
+
+            return status != null && otherStatus != null && status.getDbSize() < otherStatus.getDbSize();
+        }
+
+        boolean isAvailable() {
+            if (!reachable || !member) {
+                return false;
+            }
+
+            final ConnectivityState state = channel.getState(false);
+            return state != ConnectivityState.TRANSIENT_FAILURE && state != ConnectivityState.SHUTDOWN;
+        }
+    }
+}
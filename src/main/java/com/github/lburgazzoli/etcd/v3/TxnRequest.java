@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.github.lburgazzoli.etcd.v3.api.RequestOp;
+
+/**
+ * A transaction, the success operations are executed if all the comparisons
+ * succeed, the failure ones otherwise, i.e.
+ *
+ * <pre>
+ *     etcd.txn()
+ *         .when(Compare.version("key").equal(0L))
+ *         .then(Op.put("key", "value"))
+ *         .otherwise(Op.get("key"))
+ *         .send();
+ * </pre>
+ */
+public final class TxnRequest extends AbstractRequest<KVGrpc.KVVertxStub, TxnResponse> {
+    private final com.github.lburgazzoli.etcd.v3.api.TxnRequest.Builder request;
+
+    TxnRequest(Stub<KVGrpc.KVVertxStub> stub) {
+        super(stub);
+
+        this.request = com.github.lburgazzoli.etcd.v3.api.TxnRequest.newBuilder();
+    }
+
+    public TxnRequest when(Compare... compares) {
+        for (Compare compare : compares) {
+            request.addCompare(compare.toCompare());
+        }
+
+        return this;
+    }
+
+    public TxnRequest then(Op... ops) {
+        for (Op op : ops) {
+            request.addSuccess(op.toRequestOp());
+        }
+
+        return this;
+    }
+
+    public TxnRequest otherwise(Op... ops) {
+        for (Op op : ops) {
+            request.addFailure(op.toRequestOp());
+        }
+
+        return this;
+    }
+
+    @Override
+    public TxnRequest deadline(long timeout, TimeUnit unit) {
+        super.deadline(timeout, unit);
+        return this;
+    }
+
+    /**
+     * A transaction made only by comparisons and reads can be retried.
+     */
+    @Override
+    protected boolean isIdempotent() {
+        return isReadOnly(request.getSuccessList()) && isReadOnly(request.getFailureList());
+    }
+
+    @Override
+    protected void execute(KVGrpc.KVVertxStub stub, CompletableFuture<TxnResponse> future) {
+        stub.txn(request.build(), h -> {
+            if (h.succeeded()) {
+                future.complete(new TxnResponse(h.result()));
+            } else {
+                future.completeExceptionally(h.cause());
+            }
+        });
+    }
+
+    private static boolean isReadOnly(List<RequestOp> ops) {
+        for (RequestOp op : ops) {
+            if (!op.hasRequestRange()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
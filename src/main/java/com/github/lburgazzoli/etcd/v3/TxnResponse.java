@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.github.lburgazzoli.etcd.v3.api.ResponseOp;
+
+public final class TxnResponse extends AbstractResponse<com.github.lburgazzoli.etcd.v3.api.TxnResponse> {
+
+    public TxnResponse(com.github.lburgazzoli.etcd.v3.api.TxnResponse response) {
+        super(response, response.getHeader());
+    }
+
+    // ***********************************************
+    // Properties
+    // ***********************************************
+
+    /**
+     * @return true if all the comparisons succeeded and the success operations
+     *         have been executed
+     */
+    public boolean isSucceeded() {
+        return response().getSucceeded();
+    }
+
+    public List<PutResponse> getPutResponses() {
+        return response().getResponsesList().stream()
+            .filter(r -> r.getResponseCase() == ResponseOp.ResponseCase.RESPONSE_PUT)
+            .map(r -> new PutResponse(r.getResponsePut(), responseHeader()))
+            .collect(Collectors.toList());
+    }
+
+    public List<GetResponse> getGetResponses() {
+        return response().getResponsesList().stream()
+            .filter(r -> r.getResponseCase() == ResponseOp.ResponseCase.RESPONSE_RANGE)
+            .map(r -> new GetResponse(r.getResponseRange(), responseHeader()))
+            .collect(Collectors.toList());
+    }
+
+    public List<DeleteResponse> getDeleteResponses() {
+        return response().getResponsesList().stream()
+            .filter(r -> r.getResponseCase() == ResponseOp.ResponseCase.RESPONSE_DELETE_RANGE)
+            .map(r -> new DeleteResponse(r.getResponseDeleteRange(), responseHeader()))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.lburgazzoli.etcd.v3.api.WatchCancelRequest;
+import com.github.lburgazzoli.etcd.v3.api.WatchGrpc;
+import io.grpc.Channel;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Multiplexes all the {@link Watcher}s of a client over a single bidirectional
+ * Watch stream and dispatches the responses by watch id.
+ *
+ * The server acknowledges create requests in the order they are sent so the
+ * pending watchers are kept in a queue and bound to the watch id found in the
+ * created response. If the stream fails, it is re-established and every
+ * watcher is re-created starting from the revision after the last one it has
+ * seen.
+ */
+final class Watch implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Watch.class);
+    private static final long MIN_RECONNECT_DELAY = 100;
+    private static final long MAX_RECONNECT_DELAY = 5000;
+
+    private final WatchGrpc.WatchStub stub;
+    private final Vertx vertx;
+    private final Set<Watcher> watchers;
+    private final Map<Long, Watcher> active;
+    private final Deque<Watcher> pending;
+    private StreamObserver<com.github.lburgazzoli.etcd.v3.api.WatchRequest> stream;
+    private Observer observer;
+    private long reconnectDelay;
+    private long reconnectTimer;
+    private boolean closed;
+
+    Watch(Channel channel, Vertx vertx) {
+        this.stub = WatchGrpc.newStub(channel);
+        this.vertx = vertx;
+        this.watchers = new LinkedHashSet<>();
+        this.active = new HashMap<>();
+        this.pending = new ArrayDeque<>();
+        this.reconnectDelay = MIN_RECONNECT_DELAY;
+        this.reconnectTimer = -1;
+        this.closed = false;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        if (reconnectTimer != -1) {
+            vertx.cancelTimer(reconnectTimer);
+            reconnectTimer = -1;
+        }
+        if (stream != null) {
+            stream.onCompleted();
+            stream = null;
+            observer = null;
+        }
+
+        watchers.clear();
+        active.clear();
+        pending.clear();
+    }
+
+    // **********************************
+    // Watchers
+    // **********************************
+
+    synchronized void register(Watcher watcher) {
+        if (closed) {
+            throw new IllegalStateException("Watch is closed");
+        }
+
+        watchers.add(watcher);
+
+        if (stream != null) {
+            create(watcher);
+        } else if (reconnectTimer == -1) {
+            connect();
+        }
+    }
+
+    synchronized void cancel(Watcher watcher) {
+        watchers.remove(watcher);
+
+        if (active.remove(watcher.getWatchId(), watcher) && stream != null) {
+            stream.onNext(
+                com.github.lburgazzoli.etcd.v3.api.WatchRequest.newBuilder()
+                    .setCancelRequest(WatchCancelRequest.newBuilder().setWatchId(watcher.getWatchId()))
+                    .build()
+            );
+        }
+
+        // if the watcher is still pending, it is canceled once the server
+        // acknowledges its creation
+    }
+
+    // **********************************
+    // Stream
+    // **********************************
+
+    private void connect() {
+        LOGGER.debug("Open watch stream ({} watchers)", watchers.size());
+
+        observer = new Observer();
+        stream = stub.watch(observer);
+
+        for (Watcher watcher : watchers) {
+            create(watcher);
+        }
+    }
+
+    private void create(Watcher watcher) {
+        pending.add(watcher);
+
+        stream.onNext(
+            com.github.lburgazzoli.etcd.v3.api.WatchRequest.newBuilder()
+                .setCreateRequest(watcher.createRequest())
+                .build()
+        );
+    }
+
+    private void onNext(Observer source, com.github.lburgazzoli.etcd.v3.api.WatchResponse response) {
+        Watcher watcher;
+
+        synchronized (this) {
+            if (source != observer) {
+                return;
+            }
+
+            if (response.getCreated()) {
+                watcher = pending.poll();
+
+                if (watcher == null) {
+                    LOGGER.warn("Unexpected created response for watch id {}", response.getWatchId());
+                    return;
+                }
+
+                reconnectDelay = MIN_RECONNECT_DELAY;
+
+                if (response.getCanceled()) {
+                    watchers.remove(watcher);
+                } else {
+                    watcher.onCreated(response);
+                    active.put(response.getWatchId(), watcher);
+
+                    if (watcher.isClosed()) {
+                        // closed while waiting for the server to create it
+                        cancel(watcher);
+                    }
+
+                    return;
+                }
+            } else {
+                watcher = active.get(response.getWatchId());
+
+                if (watcher == null) {
+                    return;
+                }
+
+                if (response.getCanceled()) {
+                    active.remove(response.getWatchId());
+                    watchers.remove(watcher);
+                }
+            }
+        }
+
+        watcher.onResponse(response);
+    }
+
+    private void onError(Observer source, Throwable throwable) {
+        final List<Watcher> failed = new ArrayList<>();
+
+        synchronized (this) {
+            if (source != observer) {
+                return;
+            }
+
+            stream = null;
+            observer = null;
+            active.clear();
+            pending.clear();
+
+            if (throwable != null && !isRetryable(throwable)) {
+                LOGGER.warn("Watch stream failed", throwable);
+
+                failed.addAll(watchers);
+                watchers.clear();
+            } else if (!watchers.isEmpty()) {
+                LOGGER.debug("Watch stream interrupted, reconnect in {} ms", reconnectDelay, throwable);
+
+                reconnectTimer = vertx.setTimer(reconnectDelay, this::reconnect);
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+            }
+        }
+
+        for (Watcher watcher : failed) {
+            watcher.onError(throwable);
+        }
+    }
+
+    private synchronized void reconnect(long timerId) {
+        if (reconnectTimer != timerId) {
+            return;
+        }
+
+        reconnectTimer = -1;
+
+        if (!closed && stream == null && !watchers.isEmpty()) {
+            connect();
+        }
+    }
+
+    private static boolean isRetryable(Throwable throwable) {
+        switch (Status.fromThrowable(throwable).getCode()) {
+        case UNAVAILABLE:
+        case INTERNAL:
+        case UNKNOWN:
+        case CANCELLED:
+        case DEADLINE_EXCEEDED:
+        case RESOURCE_EXHAUSTED:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private final class Observer implements StreamObserver<com.github.lburgazzoli.etcd.v3.api.WatchResponse> {
+        @Override
+        public void onNext(com.github.lburgazzoli.etcd.v3.api.WatchResponse response) {
+            Watch.this.onNext(this, response);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            Watch.this.onError(this, throwable);
+        }
+
+        @Override
+        public void onCompleted() {
+            Watch.this.onError(this, null);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.function.Consumer;
+
+import com.github.lburgazzoli.etcd.v3.api.WatchCreateRequest;
+import com.github.lburgazzoli.etcd.v3.util.ByteStrings;
+import com.google.protobuf.ByteString;
+
+public final class WatchRequest {
+    private final Watch watch;
+    private final ByteString key;
+    private final WatchCreateRequest.Builder request;
+
+    WatchRequest(Watch watch, ByteString key) {
+        this.watch = watch;
+        this.key = key;
+        this.request = WatchCreateRequest.newBuilder().setKey(key);
+    }
+
+    // **********************************
+    // Options
+    // **********************************
+
+    public WatchRequest rangeEnd(String rangeEnd) {
+        request.setRangeEnd(ByteString.copyFromUtf8(rangeEnd));
+        return this;
+    }
+
+    /**
+     * Watch all the keys starting with the key of this request.
+     */
+    public WatchRequest prefix() {
+        request.setRangeEnd(ByteStrings.prefixEnd(key));
+        return this;
+    }
+
+    /**
+     * The revision to start watching from (inclusive), if not set the watch
+     * starts from the current revision.
+     */
+    public WatchRequest startRevision(long startRevision) {
+        request.setStartRevision(startRevision);
+        return this;
+    }
+
+    public WatchRequest prevKv(boolean prevKv) {
+        request.setPrevKv(prevKv);
+        return this;
+    }
+
+    public WatchRequest progressNotify(boolean progressNotify) {
+        request.setProgressNotify(progressNotify);
+        return this;
+    }
+
+    public WatchRequest noPut() {
+        request.addFilters(WatchCreateRequest.FilterType.NOPUT);
+        return this;
+    }
+
+    public WatchRequest noDelete() {
+        request.addFilters(WatchCreateRequest.FilterType.NODELETE);
+        return this;
+    }
+
+    // **********************************
+    // Listen
+    // **********************************
+
+    public Watcher listen(Consumer<WatchResponse> listener) {
+        return listen(listener, null);
+    }
+
+    /**
+     * Registers a watcher on the shared watch stream.
+     *
+     * @param listener the consumer notified about every {@link WatchResponse}
+     * @param errorHandler the consumer notified if the watcher fails with an
+     *                     unrecoverable error, may be null
+     * @return the watcher, to be closed to stop watching
+     */
+    public Watcher listen(Consumer<WatchResponse> listener, Consumer<Throwable> errorHandler) {
+        Watcher watcher = new Watcher(watch, request.build(), listener, errorHandler);
+        watch.register(watcher);
+
+        return watcher;
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public final class WatchResponse extends AbstractResponse<com.github.lburgazzoli.etcd.v3.api.WatchResponse> {
+
+    public WatchResponse(com.github.lburgazzoli.etcd.v3.api.WatchResponse response) {
+        super(response, response.getHeader());
+    }
+
+    // ***********************************************
+    // Properties
+    // ***********************************************
+
+    public long getWatchId() {
+        return response().getWatchId();
+    }
+
+    public List<Event> getEvents() {
+        return response().getEventsList().stream()
+            .map(Event::new)
+            .collect(Collectors.toList());
+    }
+
+    public boolean isCanceled() {
+        return response().getCanceled();
+    }
+
+    public String getCancelReason() {
+        return response().getCancelReason();
+    }
+
+    /**
+     * The minimum revision the watcher can resume from, set when the watcher has
+     * been canceled because the requested revision has been compacted.
+     */
+    public long getCompactRevision() {
+        return response().getCompactRevision();
+    }
+}
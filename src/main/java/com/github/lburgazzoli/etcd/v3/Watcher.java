@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.function.Consumer;
+
+import com.github.lburgazzoli.etcd.v3.api.WatchCreateRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A watcher registered on the watch stream shared by all the watchers of an
+ * {@link Etcd} client.
+ */
+public final class Watcher implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Watcher.class);
+
+    private final Watch watch;
+    private final WatchCreateRequest request;
+    private final Consumer<WatchResponse> listener;
+    private final Consumer<Throwable> errorHandler;
+    private volatile long watchId;
+    private volatile long revision;
+    private volatile boolean closed;
+
+    Watcher(Watch watch, WatchCreateRequest request, Consumer<WatchResponse> listener, Consumer<Throwable> errorHandler) {
+        this.watch = watch;
+        this.request = request;
+        this.listener = listener;
+        this.errorHandler = errorHandler;
+        this.watchId = -1;
+        this.revision = request.getStartRevision() > 0 ? request.getStartRevision() - 1 : 0;
+        this.closed = false;
+    }
+
+    /**
+     * The id assigned by the server to this watcher, it may change when the
+     * watch stream is re-established, -1 if the watcher is not yet created.
+     */
+    public long getWatchId() {
+        return watchId;
+    }
+
+    /**
+     * The last revision this watcher is known to be in sync with.
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            watch.cancel(this);
+        }
+    }
+
+    // **********************************
+    // Watch callbacks
+    // **********************************
+
+    /**
+     * The request to send to create or re-create this watcher, once this watcher
+     * has seen a revision, it resumes from the next one so no event is lost
+     * or delivered twice.
+     */
+    WatchCreateRequest createRequest() {
+        return revision > 0
+            ? request.toBuilder().setStartRevision(revision + 1).build()
+            : request;
+    }
+
+    void onCreated(com.github.lburgazzoli.etcd.v3.api.WatchResponse response) {
+        this.watchId = response.getWatchId();
+
+        if (this.revision == 0) {
+            this.revision = response.getHeader().getRevision();
+        }
+    }
+
+    void onResponse(com.github.lburgazzoli.etcd.v3.api.WatchResponse response) {
+        if (response.getEventsCount() > 0) {
+            long last = response.getEvents(response.getEventsCount() - 1).getKv().getModRevision();
+            if (last > revision) {
+                revision = last;
+            }
+        } else if (!response.getCanceled() && response.getHeader().getRevision() > revision) {
+            // progress notification
+            revision = response.getHeader().getRevision();
+        }
+
+        if (response.getCanceled()) {
+            closed = true;
+        }
+
+        try {
+            listener.accept(new WatchResponse(response));
+        } catch (Exception e) {
+            LOGGER.warn("Error notifying watcher {}", watchId, e);
+        }
+    }
+
+    void onError(Throwable throwable) {
+        closed = true;
+
+        if (errorHandler != null) {
+            try {
+                errorHandler.accept(throwable);
+            } catch (Exception e) {
+                LOGGER.warn("Error notifying watcher {}", watchId, e);
+            }
+        } else {
+            LOGGER.warn("Watcher {} failed", watchId, throwable);
+        }
+    }
+}
@@ -0,0 +1,491 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+import com.github.lburgazzoli.etcd.v3.api.DeleteRangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.github.lburgazzoli.etcd.v3.api.RequestOp;
+import com.github.lburgazzoli.etcd.v3.api.ResponseHeader;
+import com.github.lburgazzoli.etcd.v3.api.ResponseOp;
+import com.github.lburgazzoli.etcd.v3.util.ByteStrings;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces concurrent puts and deletes into a single Txn made only of success
+ * operations.
+ *
+ * A batch is sent when it reaches the max number of operations or when the
+ * batching window expires, whatever comes first. As etcd rejects a Txn that
+ * writes the same key twice, an operation touching a key already written by the
+ * batch being filled closes it and starts a new one. Batches are sent in order
+ * and a batch touching a key written by a batch still in flight is not sent
+ * before that batch completes, so writes to the same key are applied in the
+ * order they are issued.
+ * At most maxInFlight batches are sent concurrently, the others are queued.
+ *
+ * Only operations sharing the same deadline are batched together, the deadline
+ * runs from the creation of the batch so the time spent queued counts against
+ * it.
+ *
+ * As a Txn is atomic, a batch rejected because of one of its operations, e.g. a
+ * put with an unknown lease, is sent again one operation at a time so only the
+ * offending one fails.
+ */
+final class WriteBatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBatcher.class);
+
+    private final Stub<KVGrpc.KVVertxStub> stub;
+    private final Vertx vertx;
+    private final int maxOps;
+    private final long window;
+    private final int maxInFlight;
+    private final Deque<Batch> ready;
+    private final List<Batch> inFlight;
+    private Batch current;
+    private long timer;
+    private boolean closed;
+
+    WriteBatcher(Stub<KVGrpc.KVVertxStub> stub, Vertx vertx, int maxOps, long window, int maxInFlight) {
+        this.stub = stub;
+        this.vertx = vertx;
+        this.maxOps = maxOps;
+        this.window = Math.max(1, window);
+        this.maxInFlight = maxInFlight;
+        this.ready = new ArrayDeque<>();
+        this.inFlight = new ArrayList<>();
+        this.timer = -1;
+        this.closed = false;
+    }
+
+    /**
+     * @param request the put
+     * @param timeout the deadline of the put, in nanoseconds, 0 to use the
+     *                client default deadline
+     */
+    CompletableFuture<PutResponse> put(com.github.lburgazzoli.etcd.v3.api.PutRequest request, long timeout) {
+        final Entry<PutResponse> entry = new Entry<>(
+            RequestOp.newBuilder().setRequestPut(request).build(),
+            request.getKey(),
+            ByteString.EMPTY,
+            timeout,
+            (r, h) -> new PutResponse(r.getResponsePut(), h));
+
+        add(entry);
+
+        return entry.future;
+    }
+
+    /**
+     * @param request the delete
+     * @param timeout the deadline of the delete, in nanoseconds, 0 to use the
+     *                client default deadline
+     */
+    CompletableFuture<DeleteResponse> delete(DeleteRangeRequest request, long timeout) {
+        final Entry<DeleteResponse> entry = new Entry<>(
+            RequestOp.newBuilder().setRequestDeleteRange(request).build(),
+            request.getKey(),
+            request.getRangeEnd(),
+            timeout,
+            (r, h) -> new DeleteResponse(r.getResponseDeleteRange(), h));
+
+        add(entry);
+
+        return entry.future;
+    }
+
+    /**
+     * Fails the operations not yet sent, the batches in flight complete as
+     * usual.
+     */
+    void close() {
+        final List<Batch> pending = new ArrayList<>();
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            if (timer != -1) {
+                vertx.cancelTimer(timer);
+                timer = -1;
+            }
+            if (current != null) {
+                pending.add(current);
+                current = null;
+            }
+
+            pending.addAll(ready);
+            ready.clear();
+        }
+
+        for (Batch batch : pending) {
+            batch.fail(new IllegalStateException("WriteBatcher is closed"));
+        }
+    }
+
+    // **********************************
+    // Batching
+    // **********************************
+
+    private void add(Entry<?> entry) {
+        final List<Batch> batches = new ArrayList<>();
+        boolean accepted = false;
+
+        synchronized (this) {
+            if (!closed) {
+                if (current != null && (current.timeout != entry.timeout || current.conflicts(entry))) {
+                    flush(batches);
+                }
+
+                if (current == null) {
+                    current = new Batch(entry.timeout);
+                    timer = vertx.setTimer(window, this::onTimer);
+                }
+
+                current.add(entry);
+
+                if (current.size() >= maxOps) {
+                    flush(batches);
+                }
+
+                accepted = true;
+            }
+        }
+
+        if (accepted) {
+            send(batches);
+        } else {
+            entry.future.completeExceptionally(new IllegalStateException("WriteBatcher is closed"));
+        }
+    }
+
+    private void onTimer(long timerId) {
+        final List<Batch> batches = new ArrayList<>();
+
+        synchronized (this) {
+            if (timer == timerId) {
+                timer = -1;
+                flush(batches);
+            }
+        }
+
+        send(batches);
+    }
+
+    /**
+     * Closes the batch being filled and collects the batches that can be sent,
+     * they are sent once the lock is released so no future is completed while
+     * holding it.
+     */
+    private void flush(List<Batch> batches) {
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+
+        if (current != null) {
+            ready.add(current);
+            current = null;
+        }
+
+        dispatch(batches);
+    }
+
+    private void dispatch(List<Batch> batches) {
+        while (inFlight.size() < maxInFlight && !ready.isEmpty()) {
+            final Batch batch = ready.peek();
+
+            // the batches behind a blocked one wait as well, so the batches
+            // are sent in the same order they have been filled
+            for (int i = 0; i < inFlight.size(); i++) {
+                if (inFlight.get(i).conflicts(batch)) {
+                    return;
+                }
+            }
+
+            inFlight.add(ready.poll());
+            batches.add(batch);
+        }
+    }
+
+    private void send(List<Batch> batches) {
+        for (int i = 0; i < batches.size(); i++) {
+            send(batches.get(i));
+        }
+    }
+
+    private void send(Batch batch) {
+        final long deadline = batch.deadline();
+
+        if (deadline < 0) {
+            release(batch);
+            batch.fail(Status.DEADLINE_EXCEEDED.withDescription("deadline exceeded while queued for batching").asRuntimeException());
+            return;
+        }
+
+        final com.github.lburgazzoli.etcd.v3.api.TxnRequest request = batch.toTxnRequest();
+
+        LOGGER.trace("Send batch of {} operations", batch.size());
+
+        stub.<com.github.lburgazzoli.etcd.v3.api.TxnResponse, Exception>execute((s, f) -> s.txn(request, h -> {
+            if (h.succeeded()) {
+                f.complete(h.result());
+            } else {
+                f.completeExceptionally(h.cause());
+            }
+        }), deadline, false, null).whenComplete((r, t) -> {
+            if (t != null && batch.size() > 1 && isOperationFailure(t)) {
+                // a txn is atomic so a single bad operation fails all the
+                // others, each one is sent on its own to only fail the culprit
+                LOGGER.debug("Batch of {} operations failed, send them one by one", batch.size(), t);
+                sendEach(batch);
+                return;
+            }
+
+            release(batch);
+
+            if (t != null) {
+                batch.fail(t);
+            } else {
+                batch.complete(r);
+            }
+        });
+    }
+
+    /**
+     * Sends each operation of the batch as a plain Put or DeleteRange, the
+     * batch is in flight till all of them complete.
+     */
+    private void sendEach(Batch batch) {
+        final long deadline = Math.max(batch.deadline(), 0);
+        final CompletableFuture<?>[] calls = new CompletableFuture<?>[batch.size()];
+
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = send(batch.entries.get(i), deadline);
+        }
+
+        CompletableFuture.allOf(calls).whenComplete((r, t) -> release(batch));
+    }
+
+    private CompletableFuture<?> send(Entry<?> entry, long deadline) {
+        if (entry.op.hasRequestPut()) {
+            final com.github.lburgazzoli.etcd.v3.api.PutRequest request = entry.op.getRequestPut();
+
+            return stub.<com.github.lburgazzoli.etcd.v3.api.PutResponse, Exception>execute((s, f) -> s.put(request, h -> {
+                if (h.succeeded()) {
+                    f.complete(h.result());
+                } else {
+                    f.completeExceptionally(h.cause());
+                }
+            }), deadline, false, entry.key).whenComplete((r, t) -> {
+                if (t != null) {
+                    entry.future.completeExceptionally(t);
+                } else {
+                    entry.complete(ResponseOp.newBuilder().setResponsePut(r).build(), r.getHeader());
+                }
+            });
+        }
+
+        final DeleteRangeRequest request = entry.op.getRequestDeleteRange();
+
+        return stub.<com.github.lburgazzoli.etcd.v3.api.DeleteRangeResponse, Exception>execute((s, f) -> s.deleteRange(request, h -> {
+            if (h.succeeded()) {
+                f.complete(h.result());
+            } else {
+                f.completeExceptionally(h.cause());
+            }
+        }), deadline, false, entry.key).whenComplete((r, t) -> {
+            if (t != null) {
+                entry.future.completeExceptionally(t);
+            } else {
+                entry.complete(ResponseOp.newBuilder().setResponseDeleteRange(r).build(), r.getHeader());
+            }
+        });
+    }
+
+    /**
+     * Removes the batch from the in flight ones and sends the batches it was
+     * holding up, before its operations are completed so a write issued from
+     * a callback does not wait for it.
+     */
+    private void release(Batch batch) {
+        final List<Batch> batches = new ArrayList<>();
+
+        synchronized (this) {
+            inFlight.remove(batch);
+            dispatch(batches);
+        }
+
+        send(batches);
+    }
+
+    /**
+     * @return true if the failure may be caused by a single operation of the
+     *         batch rather than by the transport or the server state
+     */
+    private static boolean isOperationFailure(Throwable throwable) {
+        switch (Status.fromThrowable(throwable).getCode()) {
+        case INVALID_ARGUMENT:
+        case NOT_FOUND:
+        case ALREADY_EXISTS:
+        case PERMISSION_DENIED:
+        case FAILED_PRECONDITION:
+        case OUT_OF_RANGE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    // **********************************
+    // Helpers
+    // **********************************
+
+    private static final class Entry<R> {
+        final RequestOp op;
+        final ByteString key;
+        final ByteString rangeEnd;
+        final long timeout;
+        final BiFunction<ResponseOp, ResponseHeader, R> mapper;
+        final CompletableFuture<R> future;
+
+        Entry(RequestOp op, ByteString key, ByteString rangeEnd, long timeout, BiFunction<ResponseOp, ResponseHeader, R> mapper) {
+            this.op = op;
+            this.key = key;
+            this.rangeEnd = rangeEnd;
+            this.timeout = timeout;
+            this.mapper = mapper;
+            this.future = new CompletableFuture<>();
+        }
+
+        boolean overlaps(Entry<?> other) {
+            if (rangeEnd.isEmpty() && other.rangeEnd.isEmpty()) {
+                return key.equals(other.key);
+            }
+            if (rangeEnd.isEmpty()) {
+                return ByteStrings.inRange(key, other.key, other.rangeEnd);
+            }
+            if (other.rangeEnd.isEmpty()) {
+                return ByteStrings.inRange(other.key, key, rangeEnd);
+            }
+
+            return (ByteStrings.ALL_KEYS.equals(other.rangeEnd) || ByteStrings.compare(key, other.rangeEnd) < 0)
+                && (ByteStrings.ALL_KEYS.equals(rangeEnd) || ByteStrings.compare(other.key, rangeEnd) < 0);
+        }
+
+        void complete(ResponseOp response, ResponseHeader header) {
+            try {
+                future.complete(mapper.apply(response, header));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Batch {
+        final List<Entry<?>> entries;
+        final long timeout;
+        final long created;
+
+        Batch(long timeout) {
+            this.entries = new ArrayList<>();
+            this.timeout = timeout;
+            this.created = System.nanoTime();
+        }
+
+        /**
+         * @return the time left to the deadline of the batch, in nanoseconds,
+         *         0 if it has no deadline, negative if it is exceeded
+         */
+        long deadline() {
+            if (timeout == 0) {
+                return 0;
+            }
+
+            final long left = timeout - (System.nanoTime() - created);
+            return left > 0 ? left : -1;
+        }
+
+        void add(Entry<?> entry) {
+            entries.add(entry);
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        boolean conflicts(Entry<?> entry) {
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).overlaps(entry)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        boolean conflicts(Batch batch) {
+            for (int i = 0; i < batch.entries.size(); i++) {
+                if (conflicts(batch.entries.get(i))) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        com.github.lburgazzoli.etcd.v3.api.TxnRequest toTxnRequest() {
+            final com.github.lburgazzoli.etcd.v3.api.TxnRequest.Builder builder = com.github.lburgazzoli.etcd.v3.api.TxnRequest.newBuilder();
+
+            for (int i = 0; i < entries.size(); i++) {
+                builder.addSuccess(entries.get(i).op);
+            }
+
+            return builder.build();
+        }
+
+        void complete(com.github.lburgazzoli.etcd.v3.api.TxnResponse response) {
+            if (response.getResponsesCount() != entries.size()) {
+                fail(new IllegalStateException("Expected " + entries.size() + " responses, got " + response.getResponsesCount()));
+                return;
+            }
+
+            for (int i = 0; i < entries.size(); i++) {
+                entries.get(i).complete(response.getResponses(i), response.getHeader());
+            }
+        }
+
+        void fail(Throwable throwable) {
+            for (int i = 0; i < entries.size(); i++) {
+                entries.get(i).future.completeExceptionally(throwable);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3.micrometer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.github.lburgazzoli.etcd.v3.EtcdMetrics;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Binds {@link EtcdMetrics} to a Micrometer {@link MeterRegistry}:
+ *
+ * - etcd.client.calls: timer, tagged by method and status
+ * - etcd.client.calls.active: gauge of the calls in flight, tagged by method
+ * - etcd.client.calls.errors: counter of the failed calls, tagged by method and status
+ * - etcd.client.bytes.sent, etcd.client.bytes.received: distribution summaries, tagged by method
+ * - etcd.client.token.refresh: timer, tagged by outcome
+ * - etcd.client.completion.queue: timer of the time spent waiting for the completion executor
+ *
+ * Meters are cached so recording does not go through the registry lookup.
+ *
+ * Timers publish a percentile histogram by default so latencies can be
+ * aggregated across clients, a customizer can replace that, i.e. to set SLA
+ * boundaries or client side percentiles instead.
+ */
+public final class MicrometerEtcdMetrics implements EtcdMetrics {
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final Consumer<Timer.Builder> timers;
+    private final Map<String, MethodMeters> methods;
+    private final Timer tokenRefreshSuccess;
+    private final Timer tokenRefreshFailure;
+    private final Timer completionQueue;
+
+    public MicrometerEtcdMetrics(MeterRegistry registry) {
+        this(registry, Tags.empty());
+    }
+
+    /**
+     * @param tags tags added to all the meters, i.e. to tell clients apart
+     */
+    public MicrometerEtcdMetrics(MeterRegistry registry, Tags tags) {
+        this(registry, tags, Timer.Builder::publishPercentileHistogram);
+    }
+
+    /**
+     * @param tags tags added to all the meters, i.e. to tell clients apart
+     * @param timers applied to the builder of every timer before it is registered,
+     *               i.e. to configure its distribution statistics
+     */
+    public MicrometerEtcdMetrics(MeterRegistry registry, Tags tags, Consumer<Timer.Builder> timers) {
+        this.registry = registry;
+        this.tags = tags;
+        this.timers = timers;
+        this.methods = new ConcurrentHashMap<>();
+        this.tokenRefreshSuccess = timer(Timer.builder("etcd.client.token.refresh").tags(tags).tag("outcome", "success"));
+        this.tokenRefreshFailure = timer(Timer.builder("etcd.client.token.refresh").tags(tags).tag("outcome", "failure"));
+        this.completionQueue = timer(Timer.builder("etcd.client.completion.queue").tags(tags));
+    }
+
+    @Override
+    public void callStarted(String method) {
+        meters(method).active.incrementAndGet();
+    }
+
+    @Override
+    public void callCompleted(String method, Status.Code code, long durationNanos) {
+        final MethodMeters meters = meters(method);
+
+        meters.active.decrementAndGet();
+        meters.calls(code).record(durationNanos, TimeUnit.NANOSECONDS);
+
+        if (code != Status.Code.OK) {
+            meters.errors(code).increment();
+        }
+    }
+
+    @Override
+    public void messageSent(String method, int bytes) {
+        meters(method).sent.record(bytes);
+    }
+
+    @Override
+    public void messageReceived(String method, int bytes) {
+        meters(method).received.record(bytes);
+    }
+
+    @Override
+    public void tokenRefreshed(boolean succeeded, long durationNanos) {
+        (succeeded ? tokenRefreshSuccess : tokenRefreshFailure).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void completionQueued(long durationNanos) {
+        completionQueue.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private MethodMeters meters(String method) {
+        final MethodMeters meters = methods.get(method);
+        return meters != null ? meters : methods.computeIfAbsent(method, MethodMeters::new);
+    }
+
+    private Timer timer(Timer.Builder builder) {
+        timers.accept(builder);
+        return builder.register(registry);
+    }
+
+    // **********************************
+    // Helpers
+    // **********************************
+
+    private final class MethodMeters {
+        private final Tags methodTags;
+        private final AtomicInteger active;
+        private final DistributionSummary sent;
+        private final DistributionSummary received;
+        private final Map<Status.Code, Timer> calls;
+        private final Map<Status.Code, Counter> errors;
+
+        MethodMeters(String method) {
+            this.methodTags = tags.and("method", method);
+            this.active = registry.gauge("etcd.client.calls.active", methodTags, new AtomicInteger());
+            this.sent = DistributionSummary.builder("etcd.client.bytes.sent").baseUnit("bytes").tags(methodTags).register(registry);
+            this.received = DistributionSummary.builder("etcd.client.bytes.received").baseUnit("bytes").tags(methodTags).register(registry);
+            this.calls = new ConcurrentHashMap<>();
+            this.errors = new ConcurrentHashMap<>();
+        }
+
+        Timer calls(Status.Code code) {
+            return calls.computeIfAbsent(code, c -> timer(Timer.builder("etcd.client.calls").tags(methodTags).tag("status", c.name())));
+        }
+
+        Counter errors(Status.Code code) {
+            return errors.computeIfAbsent(code, c -> Counter.builder("etcd.client.calls.errors").tags(methodTags).tag("status", c.name()).register(registry));
+        }
+    }
+}
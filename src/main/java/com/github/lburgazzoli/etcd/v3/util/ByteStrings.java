@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3.util;
+
+import java.util.Comparator;
+
+import com.google.protobuf.ByteString;
+
+public final class ByteStrings {
+    /**
+     * The range_end value that, together with an empty key, selects every key.
+     */
+    public static final ByteString ALL_KEYS = ByteString.copyFrom(new byte[] { 0 });
+
+    /**
+     * Orders keys the same way etcd does, by comparing their bytes as unsigned values.
+     */
+    public static final Comparator<ByteString> COMPARATOR = ByteStrings::compare;
+
+    private ByteStrings() {
+    }
+
+    /**
+     * Computes the range_end to use to select all the keys starting with the
+     * given prefix, that is the prefix with its last byte incremented by one.
+     */
+    public static ByteString prefixEnd(ByteString prefix) {
+        final byte[] end = prefix.toByteArray();
+
+        for (int i = end.length - 1; i >= 0; i--) {
+            if (end[i] != (byte)0xff) {
+                end[i] = (byte)(end[i] + 1);
+                return ByteString.copyFrom(end, 0, i + 1);
+            }
+        }
+
+        // the prefix is made only by 0xff, select up to the end of the keyspace
+        return ALL_KEYS;
+    }
+
+    /**
+     * Checks if the given key is selected by the range [from, rangeEnd), where
+     * rangeEnd equal to {@link #ALL_KEYS} means up to the end of the keyspace.
+     */
+    public static boolean inRange(ByteString key, ByteString from, ByteString rangeEnd) {
+        return compare(key, from) >= 0 && (ALL_KEYS.equals(rangeEnd) || compare(key, rangeEnd) < 0);
+    }
+
+    public static int compare(ByteString b1, ByteString b2) {
+        final int size = Math.min(b1.size(), b2.size());
+
+        for (int i = 0; i < size; i++) {
+            int result = (b1.byteAt(i) & 0xff) - (b2.byteAt(i) & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return b1.size() - b2.size();
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Shares the result of an in flight call among all the callers asking for the
+ * same key, so identical concurrent calls result in a single call.
+ *
+ * Each caller gets its own future so cancelling it does not affect the others,
+ * the shared call is cancelled once all of its callers have cancelled.
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, Flight> inflight;
+
+    public SingleFlight() {
+        this.inflight = new ConcurrentHashMap<>();
+    }
+
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        while (true) {
+            final Flight flight = new Flight(key);
+            final Flight existing = inflight.putIfAbsent(key, flight);
+
+            if (existing != null) {
+                final CompletableFuture<V> answer = existing.join();
+                if (answer != null) {
+                    return answer;
+                }
+
+                // all the callers of the existing call cancelled in the meantime
+                inflight.remove(key, existing);
+                continue;
+            }
+
+            final CompletableFuture<V> answer = flight.join();
+            flight.start(call);
+
+            return answer;
+        }
+    }
+
+    /**
+     * @return the number of distinct calls in flight
+     */
+    public int size() {
+        return inflight.size();
+    }
+
+    private final class Flight {
+        private final K key;
+        private final CompletableFuture<V> result;
+        private CompletableFuture<V> call;
+        private int callers;
+        private boolean cancelled;
+
+        Flight(K key) {
+            this.key = key;
+            this.result = new CompletableFuture<>();
+        }
+
+        void start(Supplier<CompletableFuture<V>> supplier) {
+            final CompletableFuture<V> future;
+
+            try {
+                future = supplier.get();
+            } catch (Exception e) {
+                inflight.remove(key, this);
+                result.completeExceptionally(e);
+                return;
+            }
+
+            synchronized (this) {
+                call = future;
+
+                if (cancelled) {
+                    future.cancel(false);
+                }
+            }
+
+            future.whenComplete((r, t) -> {
+                inflight.remove(key, this);
+
+                if (t != null) {
+                    result.completeExceptionally(t);
+                } else {
+                    result.complete(r);
+                }
+            });
+        }
+
+        /**
+         * @return the future of a new caller, null if the call has been
+         *         cancelled
+         */
+        synchronized CompletableFuture<V> join() {
+            if (cancelled) {
+                return null;
+            }
+
+            callers++;
+
+            final CompletableFuture<V> answer = result.thenApply(Function.identity());
+            answer.whenComplete((r, t) -> {
+                if (t instanceof CancellationException) {
+                    leave();
+                }
+            });
+
+            return answer;
+        }
+
+        private void leave() {
+            final CompletableFuture<V> future;
+
+            synchronized (this) {
+                if (--callers > 0 || result.isDone()) {
+                    return;
+                }
+
+                cancelled = true;
+                future = call;
+            }
+
+            inflight.remove(key, this);
+
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
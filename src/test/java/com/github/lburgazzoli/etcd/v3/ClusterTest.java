@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class ClusterTest {
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource("cluster", 3, false);
+
+    @Test(timeout = 10000)
+    public void testRoundRobin() throws Exception {
+        try (Etcd etcd = Etcd.builder().endpoints(cluster.cluster().getClientEndpoints()).build()) {
+            Set<Long> members = new HashSet<>();
+
+            etcd.put("cluster/key", "value").get();
+
+            for (int i = 0; i < 12; i++) {
+                GetResponse get = etcd.get("cluster/key").get();
+
+                Assert.assertEquals("value", get.getKvs().get(0).getValue());
+                members.add(get.getHeader().getMemberId());
+            }
+
+            Assert.assertEquals(3, members.size());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testLeaderRouting() throws Exception {
+        try (Etcd etcd = Etcd.builder().endpoints(cluster.cluster().getClientEndpoints()).leaderRouting(true).build()) {
+            etcd.put("cluster/routing", "value").get();
+
+            while (etcd.getLeaderId() == 0) {
+                Thread.sleep(10);
+            }
+
+            for (int i = 0; i < 12; i++) {
+                PutResponse put = etcd.put("cluster/routing", "value-" + i).get();
+                Assert.assertEquals(etcd.getLeaderId(), put.getHeader().getMemberId());
+
+                GetResponse get = etcd.get("cluster/routing").serializable().get();
+                Assert.assertNotEquals(etcd.getLeaderId(), get.getHeader().getMemberId());
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class CompletionModeTest {
+    private static final InProcessEtcd server = new InProcessEtcd("completion-mode").user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Before
+    public void setUp() {
+        // keeps the futures pending while the callbacks are registered
+        server.latency(100, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        server.latency(0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(timeout = 10000)
+    public void testExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "completion-executor"));
+
+        try (Etcd etcd = cluster.client(b -> b.completionMode(CompletionMode.EXECUTOR).completionExecutor(executor))) {
+            Thread thread = etcd.put("completion-mode/executor", "v").send().thenApply(r -> Thread.currentThread()).get();
+            Assert.assertEquals("completion-executor", thread.getName());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testDirect() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "completion-executor"));
+
+        try (Etcd etcd = cluster.client(b -> b.completionMode(CompletionMode.DIRECT).completionExecutor(executor))) {
+            Thread thread = etcd.put("completion-mode/direct", "v").send().thenApply(r -> Thread.currentThread()).get();
+            Assert.assertNotEquals("completion-executor", thread.getName());
+            Assert.assertNotEquals(Thread.currentThread(), thread);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testContext() throws Exception {
+        Vertx vertx = Vertx.vertx();
+
+        try (Etcd etcd = cluster.client(b -> b.completionMode(CompletionMode.CONTEXT).vertx(vertx))) {
+            Context context = vertx.getOrCreateContext();
+            CompletableFuture<Context> sent = new CompletableFuture<>();
+            CompletableFuture<Context> completed = new CompletableFuture<>();
+
+            context.runOnContext(v -> {
+                sent.complete(Vertx.currentContext());
+                etcd.put("completion-mode/context", "v").send().whenComplete((r, t) -> completed.complete(Vertx.currentContext()));
+            });
+
+            Assert.assertSame(sent.get(), completed.get());
+        } finally {
+            vertx.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.api.AlarmType;
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+    private static final InProcessEtcd server = new InProcessEtcd("concurrency-limiter").user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 10000)
+    public void testConcurrencyLimit() throws Exception {
+        Etcd.Builder builder = Etcd.builder()
+            .concurrencyLimit(2, 4, 2)
+            .storageMonitor(1000L, 50L, TimeUnit.MILLISECONDS);
+
+        try (Etcd etcd = cluster.client(builder)) {
+            etcd.put("limit/key", "v1").get();
+
+            server.latency(200, 0, TimeUnit.MILLISECONDS);
+
+            try {
+                List<CompletableFuture<GetResponse>> futures = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    futures.add(etcd.get("limit/key").send());
+                }
+
+                Assert.assertEquals(2, etcd.getQueuedRequests());
+
+                try {
+                    etcd.get("limit/key").send().get();
+                    Assert.fail("Expected the request to be rejected");
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+                }
+
+                for (CompletableFuture<GetResponse> future : futures) {
+                    Assert.assertEquals("v1", future.get().getKvs().get(0).getValue());
+                }
+            } finally {
+                server.latency(0, 0, TimeUnit.MILLISECONDS);
+            }
+
+            // the limit is dropped to the minimum when the storage is full
+            server.alarm(AlarmType.NOSPACE);
+            try {
+                while (etcd.getConcurrencyLimit() > 1) {
+                    Thread.sleep(10);
+                }
+            } finally {
+                server.alarm(AlarmType.NONE);
+            }
+        }
+    }
+
+    @Test
+    public void testDecreaseOncePerWindow() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 10, 0, TimeUnit.MILLISECONDS.toNanos(1));
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(() -> { });
+        }
+
+        // a burst of slow calls is a single congestion signal
+        for (int i = 0; i < 10; i++) {
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(10), null);
+        }
+
+        Assert.assertEquals(9, limiter.limit());
+
+        for (int i = 0; i < 9; i++) {
+            limiter.acquire(() -> { });
+        }
+        for (int i = 0; i < 9; i++) {
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(10), null);
+        }
+
+        Assert.assertEquals(8, limiter.limit());
+    }
+
+    @Test
+    public void testCancelQueued() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, TimeUnit.SECONDS.toNanos(1));
+        Runnable queued = () -> Assert.fail("A cancelled task must not run");
+
+        limiter.acquire(() -> { });
+        limiter.acquire(queued);
+        Assert.assertEquals(1, limiter.queued());
+
+        // the slot of a cancelled call is freed right away
+        Assert.assertTrue(limiter.cancel(queued));
+        Assert.assertEquals(0, limiter.queued());
+
+        limiter.acquire(() -> { });
+        Assert.assertEquals(1, limiter.queued());
+
+        Assert.assertFalse(limiter.cancel(queued));
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelQueuedRequest() throws Exception {
+        try (Etcd etcd = cluster.client(b -> b.concurrencyLimit(1, 1, 1))) {
+            etcd.put("limit/cancel", "v1").get();
+
+            server.latency(200, 0, TimeUnit.MILLISECONDS);
+
+            try {
+                CompletableFuture<GetResponse> running = etcd.get("limit/cancel").send();
+                CompletableFuture<GetResponse> queued = etcd.get("limit/cancel").send();
+                Assert.assertEquals(1, etcd.getQueuedRequests());
+
+                queued.cancel(true);
+                Assert.assertEquals(0, etcd.getQueuedRequests());
+
+                // not rejected, the queue has room again
+                CompletableFuture<GetResponse> next = etcd.get("limit/cancel").send();
+                Assert.assertEquals("v1", running.get().getKvs().get(0).getValue());
+                Assert.assertEquals("v1", next.get().getKvs().get(0).getValue());
+            } finally {
+                server.latency(0, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import io.vertx.core.Vertx;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class ConnectionTest {
+    private static final InProcessEtcd server = new InProcessEtcd("connection").user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 10000)
+    public void testSharedConnection() throws Exception {
+        server.user("tenant", "tenant-secret");
+
+        Vertx vertx = Vertx.vertx();
+
+        try {
+            try (Etcd shared = cluster.client(b -> b.vertx(vertx))) {
+                Etcd.Builder builder = Etcd.builder()
+                    .connection(shared)
+                    .user("tenant")
+                    .password("tenant-secret");
+
+                try (Etcd tenant = builder.build()) {
+                    tenant.put("tenant/key", "v1").get();
+                }
+
+                // closing a view leaves the shared connection open
+                Assert.assertEquals("v1", shared.get("tenant/key").get().getKvs().get(0).getValue());
+            }
+
+            // closing the client leaves the shared vert.x instance running
+            CompletableFuture<Void> task = new CompletableFuture<>();
+            vertx.runOnContext(task::complete);
+            task.get();
+        } finally {
+            vertx.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testConnect() throws Exception {
+        LongAdder tokens = new LongAdder();
+
+        EtcdMetrics metrics = new EtcdMetrics() {
+            @Override
+            public void tokenRefreshed(boolean succeeded, long durationNanos) {
+                tokens.increment();
+            }
+        };
+
+        Etcd.Builder builder = Etcd.builder()
+            .inProcessServer(server.getName())
+            .user("root")
+            .password("secret")
+            .channels(2, StripingPolicy.LEAST_INFLIGHT)
+            .metrics(metrics);
+
+        try (Etcd etcd = builder.connect().get()) {
+            // the token is fetched before the first request
+            Assert.assertEquals(1, tokens.sum());
+
+            etcd.put("connect/key", "value").get();
+            Assert.assertEquals("value", etcd.get("connect/key").get().getKvs().get(0).getValue());
+            Assert.assertEquals(1, tokens.sum());
+        }
+
+        CompletableFuture<Etcd> failed = Etcd.builder()
+            .inProcessServer(server.getName())
+            .user("root")
+            .password("wrong")
+            .connect();
+
+        try {
+            failed.get();
+            Assert.fail("Connect should fail with a wrong password");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(failed.isCompletedExceptionally());
+        }
+    }
+}
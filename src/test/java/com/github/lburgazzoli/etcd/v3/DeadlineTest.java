@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import io.grpc.Status;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class DeadlineTest {
+    private static final InProcessEtcd server = new InProcessEtcd("deadline").user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 10000)
+    public void testDeadline() throws Exception {
+        try (Etcd etcd = cluster.client(b -> b.defaultDeadline(5L, TimeUnit.SECONDS))) {
+            etcd.put("deadline/key", "v1").get();
+
+            server.latency(200, 0, TimeUnit.MILLISECONDS);
+
+            try {
+                etcd.get("deadline/key").deadline(50, TimeUnit.MILLISECONDS).send().get();
+                Assert.fail("Expected the deadline to be exceeded");
+            } catch (ExecutionException e) {
+                Assert.assertEquals(Status.Code.DEADLINE_EXCEEDED, Status.fromThrowable(e).getCode());
+            } finally {
+                server.latency(0, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
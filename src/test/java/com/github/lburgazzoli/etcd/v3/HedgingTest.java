@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class HedgingTest {
+    private static final InProcessEtcd server = new InProcessEtcd("hedging").user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 10000)
+    public void testHedgedReads() throws Exception {
+        try (Etcd etcd = cluster.client(b -> b.hedgedReads(95.0, 50L, TimeUnit.MILLISECONDS))) {
+            etcd.put("hedge/key", "v1").get();
+
+            // reads faster than the delay are not hedged
+            for (int i = 0; i < 20; i++) {
+                Assert.assertEquals("v1", etcd.get("hedge/key").serializable().get().getKvs().get(0).getValue());
+            }
+
+            Assert.assertEquals(0, etcd.getHedgedReads());
+
+            server.latency(0, 200, TimeUnit.MILLISECONDS);
+
+            try {
+                for (int i = 0; i < 20; i++) {
+                    Assert.assertEquals("v1", etcd.get("hedge/key").serializable().get().getKvs().get(0).getValue());
+                }
+            } finally {
+                server.latency(0, 0, TimeUnit.MILLISECONDS);
+            }
+
+            // slow reads are, up to the budget of 10 tokens plus a tenth of a
+            // token per read
+            Assert.assertTrue(etcd.getHedgedReads() > 0);
+            Assert.assertTrue(etcd.getHedgedReads() <= 12);
+        }
+    }
+}
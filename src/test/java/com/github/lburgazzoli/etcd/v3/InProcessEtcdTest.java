@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import io.grpc.Status;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class InProcessEtcdTest {
+    private static final InProcessEtcd server = new InProcessEtcd("in-process", 0).user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 10000)
+    public void testRevisions() throws Exception {
+        try (Etcd etcd = cluster.client()) {
+            long r1 = etcd.put("mvcc/key", "v1").get().getHeader().getRevision();
+            long r2 = etcd.put("mvcc/key", "v2").get().getHeader().getRevision();
+
+            Assert.assertEquals(r1 + 1, r2);
+
+            KeyValue kv = etcd.get("mvcc/key").get().getKvs().get(0);
+            Assert.assertEquals("v2", kv.getValue());
+            Assert.assertEquals(r1, kv.getCreateRevision());
+            Assert.assertEquals(r2, kv.getModRevision());
+            Assert.assertEquals(2, kv.getVersion());
+
+            TxnResponse txn = etcd.txn()
+                .when(Compare.modRevision("mvcc/key").equal(r2))
+                .then(Op.put("mvcc/key", "v3"), Op.get("mvcc/key"))
+                .send()
+                .get();
+
+            Assert.assertTrue(txn.isSucceeded());
+            Assert.assertEquals("v3", txn.getGetResponses().get(0).getKvs().get(0).getValue());
+            Assert.assertEquals(1, etcd.delete("mvcc/key").get().getDeleted());
+            Assert.assertEquals(0, etcd.get("mvcc/key").get().getCount());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testWatchAndCompaction() throws Exception {
+        try (Etcd etcd = cluster.client()) {
+            long revision = etcd.put("compact/key", "v1").get().getHeader().getRevision();
+            etcd.put("compact/key", "v2").get();
+
+            BlockingQueue<List<Event>> events = new LinkedBlockingQueue<>();
+
+            try (Watcher watcher = etcd.watch("compact/key").startRevision(revision).listen(r -> events.add(r.getEvents()))) {
+                List<Event> received = events.poll(5, TimeUnit.SECONDS);
+
+                Assert.assertNotNull(received);
+                Assert.assertEquals(2, received.size());
+                Assert.assertEquals("v1", received.get(0).getKeyValue().getValue());
+            }
+
+            server.compact(revision + 1);
+
+            BlockingQueue<WatchResponse> responses = new LinkedBlockingQueue<>();
+            etcd.watch("compact/key").startRevision(revision).listen(responses::add);
+
+            WatchResponse response = responses.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(response);
+            Assert.assertTrue(response.isCanceled());
+            Assert.assertEquals(revision + 1, response.getCompactRevision());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testLeaseExpiration() throws Exception {
+        try (Etcd etcd = cluster.client()) {
+            long lease = etcd.grant(1).get().getId();
+            etcd.put("lease/k\u00eby", "value", lease).get();
+
+            List<CharSequence> keys = etcd.timeToLive(lease, true).get().getKeys();
+            Assert.assertEquals(1, keys.size());
+            Assert.assertEquals("lease/k\u00eby", keys.get(0).toString());
+
+            while (etcd.get("lease/k\u00eby").get().getCount() > 0) {
+                Thread.sleep(100);
+            }
+
+            Assert.assertEquals(-1, etcd.timeToLive(lease, false).get().getTTL());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTokenInvalidation() throws Exception {
+        try (Etcd etcd = cluster.client()) {
+            etcd.put("auth/key", "v1").get();
+
+            server.invalidateTokens();
+
+            Assert.assertEquals("v1", etcd.get("auth/key").get().getKvs().get(0).getValue());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFaultInjection() throws Exception {
+        try (Etcd etcd = cluster.client()) {
+            etcd.put("fault/key", "v1").get();
+
+            server.failures(1, Status.UNAVAILABLE);
+
+            try {
+                etcd.put("fault/key", "v2").send().get();
+                Assert.fail("Expected an injected failure");
+            } catch (ExecutionException e) {
+                Assert.assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(e).getCode());
+            } finally {
+                server.failures(0, Status.UNAVAILABLE);
+            }
+
+            server.latency(50, 0, TimeUnit.MILLISECONDS);
+
+            try {
+                long start = System.nanoTime();
+                etcd.get("fault/key").get();
+
+                Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+            } finally {
+                server.latency(0, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
@@ -16,7 +16,14 @@
  */
 package com.github.lburgazzoli.etcd.v3;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
 import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.google.protobuf.ByteString;
 import org.junit.Assert;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -37,5 +44,107 @@ public class KeyValueTest {
         Assert.assertEquals(1, get.getCount());
         Assert.assertEquals("key", get.getKvs().get(0).getKey());
         Assert.assertEquals("value", get.getKvs().get(0).getValue());
+        Assert.assertSame(get.getKvs().get(0), get.getKvs().get(0));
+
+        Assert.assertEquals(1, get.size());
+        Assert.assertEquals("key", get.keyAt(0).toStringUtf8());
+        Assert.assertEquals("value", get.valueAt(0).toStringUtf8());
+        Assert.assertEquals(put.getHeader().getRevision(), get.modRevisionAt(0));
+
+        GetResponse.Cursor cursor = get.cursor();
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("key", cursor.key().toStringUtf8());
+        Assert.assertEquals("value", cursor.value().toStringUtf8());
+        Assert.assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testAccessors() throws Exception {
+        final String value = "v\u00e4lue-\u20ac-\uD83D\uDE00";
+        final KeyValue kv = keyValue("k\u00eby", value);
+
+        Assert.assertEquals("k\u00eby", kv.getKey().toString());
+        Assert.assertEquals(ByteString.copyFromUtf8("k\u00eby"), kv.getKeyBytes());
+        Assert.assertEquals(ByteBuffer.wrap("k\u00eby".getBytes(StandardCharsets.UTF_8)), kv.getKeyBuffer());
+
+        Assert.assertEquals(value, kv.getValue().toString());
+        Assert.assertSame(kv.getValue(), kv.getValue());
+        Assert.assertEquals(ByteString.copyFromUtf8(value), kv.getValueBytes());
+        Assert.assertEquals(value.getBytes(StandardCharsets.UTF_8).length, kv.getValueSize());
+        Assert.assertNotEquals(value.length(), kv.getValueSize());
+
+        final ByteBuffer buffer = kv.getValueBuffer();
+        Assert.assertTrue(buffer.isReadOnly());
+        Assert.assertEquals(ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)), buffer);
+
+        Assert.assertEquals(1, kv.getCreateRevision());
+        Assert.assertEquals(2, kv.getModRevision());
+        Assert.assertEquals(3, kv.getVersion());
+        Assert.assertEquals(4, kv.getLease());
+    }
+
+    @Test
+    public void testWriteValueTo() throws Exception {
+        final String value = "v\u00e4lue-\u20ac-\uD83D\uDE00";
+        final KeyValue kv = keyValue("key", value);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        kv.writeValueTo(out);
+        Assert.assertEquals(value, new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        out = new ByteArrayOutputStream();
+        Assert.assertEquals(kv.getValueSize(), kv.writeValueTo(Channels.newChannel(out)));
+        Assert.assertEquals(value, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteValueToFullChannel() throws Exception {
+        final KeyValue kv = keyValue("key", "value");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // a non blocking channel accepting 3 bytes then none
+        final WritableByteChannel channel = new WritableByteChannel() {
+            private int capacity = 3;
+
+            @Override
+            public int write(ByteBuffer src) {
+                int count = Math.min(capacity, src.remaining());
+                for (int i = 0; i < count; i++) {
+                    out.write(src.get());
+                }
+
+                capacity -= count;
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        int written = kv.writeValueTo(channel);
+        Assert.assertEquals(3, written);
+        Assert.assertEquals("val", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        ByteBuffer remaining = kv.getValueBuffer();
+        remaining.position(written);
+        Assert.assertEquals(ByteBuffer.wrap("ue".getBytes(StandardCharsets.UTF_8)), remaining);
+    }
+
+    private static KeyValue keyValue(String key, String value) {
+        return new KeyValue(
+            com.github.lburgazzoli.etcd.v3.api.KeyValue.newBuilder()
+                .setKey(ByteString.copyFromUtf8(key))
+                .setValue(ByteString.copyFromUtf8(value))
+                .setCreateRevision(1)
+                .setModRevision(2)
+                .setVersion(3)
+                .setLease(4)
+                .build());
     }
 }
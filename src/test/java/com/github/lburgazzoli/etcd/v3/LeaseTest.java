@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class LeaseTest {
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource("lease");
+
+    @Test(timeout = 15000)
+    public void testKeepAlive() throws Exception {
+        try (Etcd etcd = Etcd.builder().endpoint(cluster.cluster().getClientEndpoints().get(0)).build()) {
+            LeaseGrantResponse grant = etcd.grant(2).get();
+            CountDownLatch refreshes = new CountDownLatch(3);
+            CountDownLatch expired = new CountDownLatch(1);
+
+            etcd.put("lease/key", "value", grant.getId()).get();
+
+            try (KeepAlive keepAlive = etcd.keepAlive(grant.getId(), new KeepAliveListener() {
+                @Override
+                public void onKeepAlive(long leaseId, long ttl) {
+                    refreshes.countDown();
+                }
+
+                @Override
+                public void onExpired(long leaseId) {
+                    expired.countDown();
+                }
+            })) {
+                // outlive the TTL of the lease
+                Assert.assertTrue(refreshes.await(5, TimeUnit.SECONDS));
+                Assert.assertEquals(1, etcd.get("lease/key").get().getCount());
+                Assert.assertTrue(keepAlive.getDeadline() > System.currentTimeMillis());
+
+                etcd.revoke(grant.getId()).get();
+
+                Assert.assertTrue(expired.await(5, TimeUnit.SECONDS));
+                Assert.assertTrue(keepAlive.isExpired());
+                Assert.assertEquals(0, etcd.get("lease/key").get().getCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class MemberChannelTest {
+    private static final InProcessEtcd server = new InProcessEtcd("member-channel");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 10000)
+    public void testFailover() throws Exception {
+        final MemberChannel channel = new MemberChannel(new ManagedChannel[] {
+            InProcessChannelBuilder.forName("member-channel-down").build(),
+            InProcessChannelBuilder.forName(server.getName()).build(),
+            InProcessChannelBuilder.forName("member-channel-down").build()
+        });
+
+        try {
+            // ready as soon as a member is
+            while (channel.getState(true) != ConnectivityState.READY) {
+                Thread.sleep(10);
+            }
+
+            for (int i = 0; i < 10; i++) {
+                Assert.assertEquals(1, channel.select());
+            }
+        } finally {
+            channel.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import io.grpc.Status;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class MetricsTest {
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(new InProcessEtcd("metrics").user("root", "secret"));
+
+    @Test(timeout = 10000)
+    public void testMetrics() throws Exception {
+        Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+        LongAdder sent = new LongAdder();
+        LongAdder tokens = new LongAdder();
+
+        EtcdMetrics metrics = new EtcdMetrics() {
+            @Override
+            public void callCompleted(String method, Status.Code code, long durationNanos) {
+                calls.computeIfAbsent(method + ":" + code, k -> new LongAdder()).increment();
+            }
+
+            @Override
+            public void messageSent(String method, int bytes) {
+                sent.add(bytes);
+            }
+
+            @Override
+            public void tokenRefreshed(boolean succeeded, long durationNanos) {
+                tokens.increment();
+            }
+        };
+
+        try (Etcd etcd = cluster.client(b -> b.metrics(metrics))) {
+            etcd.put("metrics/key", "value").get();
+            etcd.get("metrics/key").get();
+
+            // unary responses are delivered on the message, before the call is closed
+            while (!calls.containsKey("etcdserverpb.KV/Range:OK")) {
+                Thread.sleep(10);
+            }
+
+            Assert.assertEquals(1, calls.get("etcdserverpb.KV/Put:OK").sum());
+            Assert.assertEquals(1, calls.get("etcdserverpb.KV/Range:OK").sum());
+            Assert.assertTrue(sent.sum() > 0);
+            Assert.assertTrue(tokens.sum() > 0);
+        }
+    }
+}
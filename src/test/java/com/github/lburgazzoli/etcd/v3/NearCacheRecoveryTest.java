@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import io.grpc.Status;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class NearCacheRecoveryTest {
+    private static final InProcessEtcd server = new InProcessEtcd("near-cache-recovery").user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 10000)
+    public void testWatchError() throws Exception {
+        try (Etcd etcd = cluster.client()) {
+            etcd.put("near-cache-recovery/key", "v1").get();
+
+            NearCache nearCache = etcd.nearCache("near-cache-recovery/").get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(nearCache.isReady());
+
+            // a non retryable error fails the watcher of the cache
+            server.failWatches(Status.PERMISSION_DENIED);
+
+            PutResponse put = etcd.put("near-cache-recovery/key", "v2").get();
+
+            // seeded again and watching from the new revision
+            while (!nearCache.isReady() || nearCache.getRevision() < put.getHeader().getRevision()) {
+                Thread.sleep(10);
+            }
+
+            Assert.assertEquals("v2", nearCache.get("near-cache-recovery/key").getValue());
+
+            PutResponse next = etcd.put("near-cache-recovery/key", "v3").get();
+            while (nearCache.getRevision() < next.getHeader().getRevision()) {
+                Thread.sleep(10);
+            }
+
+            Assert.assertEquals("v3", nearCache.get("near-cache-recovery/key").getValue());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class NearCacheTest {
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource("near-cache");
+
+    @Test(timeout = 10000)
+    public void testNearCache() throws Exception {
+        try (Etcd etcd = Etcd.builder().endpoint(cluster.cluster().getClientEndpoints().get(0)).build()) {
+            for (int i = 0; i < 10; i++) {
+                etcd.put("cache/key-" + i, "value-" + i).get();
+            }
+
+            NearCache nearCache = etcd.nearCache("cache/", 3).get(5, TimeUnit.SECONDS);
+
+            Assert.assertTrue(nearCache.isReady());
+            Assert.assertEquals(10, nearCache.size());
+            Assert.assertEquals("value-5", nearCache.get("cache/key-5").getValue());
+
+            List<KeyValue> kvs = nearCache.getPrefix("cache/key-");
+            Assert.assertEquals(10, kvs.size());
+            Assert.assertEquals("cache/key-0", kvs.get(0).getKey());
+            Assert.assertEquals("cache/key-9", kvs.get(9).getKey());
+
+            long revision = etcd.put("cache/key-5", "updated").get().getHeader().getRevision();
+            while (nearCache.getRevision() < revision) {
+                Thread.sleep(10);
+            }
+
+            GetResponse get = etcd.get("cache/key-5").get();
+            Assert.assertEquals("updated", get.getKvs().get(0).getValue());
+            Assert.assertEquals(revision, get.getHeader().getRevision());
+        }
+    }
+}
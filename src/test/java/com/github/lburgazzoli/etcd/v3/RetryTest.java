@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import io.grpc.Status;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class RetryTest {
+    private static final InProcessEtcd server = new InProcessEtcd("retry").user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 10000)
+    public void testRetries() throws Exception {
+        try (Etcd etcd = cluster.client(b -> b.retries(3, 10L, 50L, TimeUnit.MILLISECONDS))) {
+            etcd.put("retry/key", "v1").get();
+
+            // idempotent requests are retried
+            server.failNext(2, Status.UNAVAILABLE);
+            Assert.assertEquals("v1", etcd.get("retry/key").get().getKvs().get(0).getValue());
+
+            // up to the max number of attempts
+            server.failNext(3, Status.UNAVAILABLE);
+            try {
+                etcd.get("retry/key").send().get();
+                Assert.fail("Expected an injected failure");
+            } catch (ExecutionException e) {
+                Assert.assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(e).getCode());
+            }
+
+            // exceeding a message size limit would fail again on every attempt,
+            // the call is not retried even if the next attempt would succeed
+            server.failNext(1, Status.RESOURCE_EXHAUSTED.withDescription("grpc: received message larger than max"));
+            try {
+                etcd.get("retry/key").send().get();
+                Assert.fail("Expected an injected failure");
+            } catch (ExecutionException e) {
+                Assert.assertEquals(Status.Code.RESOURCE_EXHAUSTED, Status.fromThrowable(e).getCode());
+            }
+
+            // non idempotent ones are not
+            server.failNext(1, Status.UNAVAILABLE);
+            try {
+                etcd.put("retry/key", "v2").send().get();
+                Assert.fail("Expected an injected failure");
+            } catch (ExecutionException e) {
+                Assert.assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(e).getCode());
+            }
+
+            Assert.assertEquals("v1", etcd.get("retry/key").get().getKvs().get(0).getValue());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCancel() throws Exception {
+        try (Etcd etcd = cluster.client()) {
+            etcd.put("cancel/key", "v1").get();
+
+            server.latency(5, 0, TimeUnit.SECONDS);
+
+            try {
+                long cancelled = server.cancelledCalls();
+
+                CompletableFuture<GetResponse> future = etcd.get("cancel/key").send();
+                while (server.delayedCalls() == 0) {
+                    Thread.sleep(10);
+                }
+
+                Assert.assertTrue(future.cancel(true));
+
+                // the call is cancelled on the server too, long before the latency
+                while (server.cancelledCalls() == cancelled) {
+                    Thread.sleep(10);
+                }
+            } finally {
+                server.latency(0, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelCoalesced() throws Exception {
+        try (Etcd etcd = cluster.client(b -> b.readCoalescing(true))) {
+            etcd.put("cancel/coalesced", "v1").get();
+
+            server.latency(5, 0, TimeUnit.SECONDS);
+
+            try {
+                long cancelled = server.cancelledCalls();
+
+                CompletableFuture<GetResponse> f1 = etcd.get("cancel/coalesced").send();
+                CompletableFuture<GetResponse> f2 = etcd.get("cancel/coalesced").send();
+                while (server.delayedCalls() == 0) {
+                    Thread.sleep(10);
+                }
+
+                // the shared call is still needed by the second caller
+                Assert.assertTrue(f1.cancel(true));
+                Thread.sleep(100);
+                Assert.assertEquals(cancelled, server.cancelledCalls());
+                Assert.assertFalse(f2.isDone());
+
+                // and cancelled once no caller is left
+                Assert.assertTrue(f2.cancel(true));
+                while (server.cancelledCalls() == cancelled) {
+                    Thread.sleep(10);
+                }
+            } finally {
+                server.latency(0, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
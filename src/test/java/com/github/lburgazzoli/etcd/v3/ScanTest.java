@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class ScanTest {
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource("scan");
+
+    @Test(timeout = 10000)
+    public void testPagedScan() throws Exception {
+        try (Etcd etcd = Etcd.builder().endpoint(cluster.cluster().getClientEndpoints().get(0)).build()) {
+            for (int i = 0; i < 25; i++) {
+                etcd.put(String.format("scan/key-%02d", i), "value-" + i).get();
+            }
+
+            try (ScanIterator it = etcd.scan("scan/").prefix().pageSize(4).prefetch(2).iterator()) {
+                int count = 0;
+
+                // written after the first page has been read, must not be visible
+                Assert.assertTrue(it.hasNext());
+                etcd.put("scan/key-99", "value-99").get();
+
+                while (it.hasNext()) {
+                    Assert.assertEquals(String.format("scan/key-%02d", count), it.next().getKey());
+                    count++;
+                }
+
+                Assert.assertEquals(25, count);
+            }
+
+            try (Stream<KeyValue> stream = etcd.scan("scan/key-1").prefix().pageSize(3).stream()) {
+                List<String> values = stream.map(kv -> kv.getValue().toString()).collect(Collectors.toList());
+
+                Assert.assertEquals(10, values.size());
+                Assert.assertEquals("value-10", values.get(0));
+            }
+
+            try (Stream<KeyValue> stream = etcd.scan("scan/").prefix().pageSize(4).serializable().stream()) {
+                Assert.assertEquals(26, stream.count());
+            }
+        }
+    }
+}
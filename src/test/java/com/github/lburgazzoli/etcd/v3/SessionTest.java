@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class SessionTest {
+    private static final InProcessEtcd server = new InProcessEtcd("session").user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 10000)
+    public void testSessionConsistency() throws Exception {
+        try (Etcd etcd = cluster.client(b -> b.sessionConsistency(true))) {
+            Assert.assertEquals(0, etcd.getSessionRevision());
+
+            PutResponse put = etcd.put("session/key", "v1").get();
+            Assert.assertEquals(put.getHeader().getRevision(), etcd.getSessionRevision());
+
+            GetResponse get = etcd.get("session/key").get();
+            Assert.assertEquals("v1", get.getKvs().get(0).getValue());
+            Assert.assertTrue(get.getHeader().getRevision() >= etcd.getSessionRevision());
+
+            etcd.delete("session/key").get();
+            Assert.assertEquals(server.revision(), etcd.getSessionRevision());
+            Assert.assertTrue(etcd.get("session/key").get().getKvs().isEmpty());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testReadOnlyTxn() throws Exception {
+        try (Etcd etcd = cluster.client(b -> b.sessionConsistency(true))) {
+            long revision = etcd.put("session/txn/key", "v1").get().getHeader().getRevision();
+            Assert.assertEquals(revision, etcd.getSessionRevision());
+
+            // written by another client
+            try (Etcd other = cluster.client()) {
+                other.put("session/txn/other", "o1").get();
+            }
+
+            TxnResponse read = etcd.txn()
+                .when(Compare.value("session/txn/key").equal("v1"))
+                .then(Op.get("session/txn/key"))
+                .get();
+
+            Assert.assertTrue(read.isSucceeded());
+            Assert.assertTrue(read.getHeader().getRevision() > revision);
+            Assert.assertEquals(revision, etcd.getSessionRevision());
+
+            TxnResponse failed = etcd.txn()
+                .when(Compare.value("session/txn/key").equal("v0"))
+                .then(Op.put("session/txn/key", "v2"))
+                .get();
+
+            Assert.assertFalse(failed.isSucceeded());
+            Assert.assertEquals(revision, etcd.getSessionRevision());
+
+            TxnResponse write = etcd.txn()
+                .when(Compare.value("session/txn/key").equal("v1"))
+                .then(Op.put("session/txn/key", "v2"))
+                .get();
+
+            Assert.assertTrue(write.isSucceeded());
+            Assert.assertEquals(write.getHeader().getRevision(), etcd.getSessionRevision());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSessionConsistencyWithNearCache() throws Exception {
+        try (Etcd etcd = cluster.client(b -> b.sessionConsistency(true))) {
+            etcd.put("session/cached/key", "v0").get();
+
+            NearCache nearCache = etcd.nearCache("session/cached/").get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(nearCache.isReady());
+
+            // the cache may lag behind the writes of the client, reads under the
+            // prefix still see them
+            for (int i = 1; i <= 20; i++) {
+                etcd.put("session/cached/key", "v" + i).get();
+                Assert.assertEquals("v" + i, etcd.get("session/cached/key").get().getKvs().get(0).getValue());
+            }
+
+            // served by the cache once it has caught up
+            while (nearCache.getRevision() < etcd.getSessionRevision()) {
+                Thread.sleep(10);
+            }
+
+            GetResponse cached = etcd.get("session/cached/key").get();
+            Assert.assertEquals("v20", cached.getKvs().get(0).getValue());
+            Assert.assertEquals(nearCache.getRevision(), cached.getHeader().getRevision());
+
+            // linearizable reads always go to the cluster
+            Assert.assertEquals(server.revision(), etcd.get("session/cached/key").linearizable().get().getHeader().getRevision());
+        }
+    }
+}
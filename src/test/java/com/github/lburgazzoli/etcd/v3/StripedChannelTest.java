@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class StripedChannelTest {
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(new InProcessEtcd("striped-channel").user("root", "secret"));
+
+    @Test(timeout = 10000)
+    public void testChannelStriping() throws Exception {
+        for (StripingPolicy policy : StripingPolicy.values()) {
+            try (Etcd etcd = cluster.client(b -> b.channels(4, policy))) {
+                List<CompletableFuture<PutResponse>> puts = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    puts.add(etcd.put("striping/key-" + i, policy.name()).send());
+                }
+                for (CompletableFuture<PutResponse> put : puts) {
+                    put.get();
+                }
+
+                for (int i = 0; i < 16; i++) {
+                    Assert.assertEquals(policy.name(), etcd.get("striping/key-" + i).get().getKvs().get(0).getValue());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class TopologyTest {
+    private static final InProcessEtcd server = new InProcessEtcd("topology").user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 10000)
+    public void testLeaderRouting() throws Exception {
+        Etcd.Builder builder = Etcd.builder()
+            .leaderRouting(true)
+            .topologyRefreshInterval(1L, TimeUnit.HOURS);
+
+        try (Etcd etcd = cluster.client(builder)) {
+            PutResponse put = etcd.put("routing/key", "v1").get();
+
+            while (etcd.getLeaderId() != put.getHeader().getMemberId()) {
+                Thread.sleep(10);
+            }
+
+            // no follower to read from, served by the leader
+            Assert.assertEquals("v1", etcd.get("routing/key").serializable().get().getKvs().get(0).getValue());
+
+            // a new raft term triggers a refresh, long before the next poll
+            server.leader(7, 2);
+            etcd.put("routing/key", "v2").get();
+
+            while (etcd.getLeaderId() != 7) {
+                Thread.sleep(10);
+            }
+
+            // the leader is not among the endpoints, writes are balanced
+            etcd.put("routing/key", "v3").get();
+            Assert.assertEquals("v3", etcd.get("routing/key").get().getKvs().get(0).getValue());
+        } finally {
+            server.leader(1, 1);
+        }
+    }
+}
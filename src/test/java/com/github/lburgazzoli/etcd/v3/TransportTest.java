@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import io.grpc.Status;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class TransportTest {
+    private static final InProcessEtcd server = new InProcessEtcd("transport", 0).user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 30000)
+    public void testTransportOptions() throws Exception {
+        // goes through the network so the Vert.x channel is used
+        Etcd.Builder builder = Etcd.builder()
+            .endpoint(server.getClientEndpoints().get(0))
+            .user("root")
+            .password("secret")
+            .preferNativeTransport(true)
+            .eventLoopPoolSize(1)
+            .maxInboundMessageSize(8 * 1024 * 1024);
+
+        // falls back to NIO if the native transport is not available
+        try (Etcd etcd = builder.build()) {
+            String value = String.join("", Collections.nCopies(1024 * 1024, "x"));
+            for (int i = 0; i < 5; i++) {
+                etcd.put("transport/key-" + i, value).get();
+            }
+
+            // larger than the 4 MB gRPC default
+            TxnResponse response = readAll(etcd);
+
+            Assert.assertEquals(5, response.getGetResponses().size());
+            Assert.assertEquals(1024 * 1024, response.getGetResponses().get(4).getKvs().get(0).getValueSize());
+        }
+
+        builder.maxInboundMessageSize(2 * 1024 * 1024);
+
+        try (Etcd etcd = builder.build()) {
+            readAll(etcd);
+            Assert.fail("The response should exceed the max inbound message size");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(Status.Code.RESOURCE_EXHAUSTED, Status.fromThrowable(e.getCause()).getCode());
+        }
+    }
+
+    private static TxnResponse readAll(Etcd etcd) throws Exception {
+        return etcd.txn()
+            .then(Op.get("transport/key-0"), Op.get("transport/key-1"), Op.get("transport/key-2"), Op.get("transport/key-3"), Op.get("transport/key-4"))
+            .get();
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class TxnTest {
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource("txn");
+
+    @Test
+    public void testCompareAndSet() throws Exception {
+        try (Etcd etcd = Etcd.builder().endpoint(cluster.cluster().getClientEndpoints().get(0)).build()) {
+            TxnResponse create = etcd.txn()
+                .when(Compare.version("txn/key").equal(0L))
+                .then(Op.put("txn/key", "v1"), Op.put("txn/other", "o1"))
+                .otherwise(Op.get("txn/key"))
+                .get();
+
+            Assert.assertTrue(create.isSucceeded());
+            Assert.assertEquals(2, create.getPutResponses().size());
+
+            TxnResponse retry = etcd.txn()
+                .when(Compare.version("txn/key").equal(0L))
+                .then(Op.put("txn/key", "v2"))
+                .otherwise(Op.get("txn/key"))
+                .get();
+
+            Assert.assertFalse(retry.isSucceeded());
+            Assert.assertEquals("v1", retry.getGetResponses().get(0).getKvs().get(0).getValue());
+
+            TxnResponse swap = etcd.txn()
+                .when(Compare.value("txn/key").equal("v1"), Compare.lease("txn/key").equal(0L))
+                .then(Op.put("txn/key", "v2"), Op.deletePrefix("txn/other"))
+                .get();
+
+            Assert.assertTrue(swap.isSucceeded());
+            Assert.assertEquals(1, swap.getDeleteResponses().get(0).getDeleted());
+            Assert.assertEquals("v2", etcd.get("txn/key").get().getKvs().get(0).getValue());
+        }
+    }
+
+    @Test
+    public void testWriteBatching() throws Exception {
+        Etcd.Builder builder = Etcd.builder()
+            .endpoint(cluster.cluster().getClientEndpoints().get(0))
+            .writeBatching(true)
+            .writeBatchSize(16)
+            .writeBatchWindow(5L, TimeUnit.MILLISECONDS);
+
+        try (Etcd etcd = builder.build()) {
+            List<CompletableFuture<PutResponse>> puts = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                puts.add(etcd.put("batch/key-" + i, "value-" + i).send());
+            }
+
+            // same key twice, must end up in different batches
+            puts.add(etcd.put("batch/key-0", "updated").send());
+
+            CompletableFuture.allOf(puts.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+            Assert.assertTrue(
+                puts.get(100).get().getHeader().getRevision() > puts.get(0).get().getHeader().getRevision());
+            Assert.assertEquals("updated", etcd.get("batch/key-0").get().getKvs().get(0).getValue());
+            Assert.assertEquals(1, etcd.delete("batch/key-1").get().getDeleted());
+        }
+    }
+}
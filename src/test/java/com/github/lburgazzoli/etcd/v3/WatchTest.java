@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class WatchTest {
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource("watch");
+
+    @Test(timeout = 10000)
+    public void testMultipleWatchers() throws Exception {
+        try (Etcd etcd = Etcd.builder().endpoint(cluster.cluster().getClientEndpoints().get(0)).build()) {
+            BlockingQueue<Event> keyEvents = new LinkedBlockingQueue<>();
+            BlockingQueue<Event> prefixEvents = new LinkedBlockingQueue<>();
+
+            Watcher w1 = etcd.watch("watch/key").listen(r -> keyEvents.addAll(r.getEvents()));
+            Watcher w2 = etcd.watch("watch/").prefix().listen(r -> prefixEvents.addAll(r.getEvents()));
+
+            // a put sent before the watchers are created would not be seen
+            awaitCreated(w1);
+            awaitCreated(w2);
+
+            etcd.put("watch/key", "v1").get();
+            etcd.put("watch/other", "v2").get();
+
+            Event event = keyEvents.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(event);
+            Assert.assertEquals(Event.Type.PUT, event.getType());
+            Assert.assertEquals("v1", event.getKeyValue().getValue());
+
+            Assert.assertEquals("watch/key", prefixEvents.poll(5, TimeUnit.SECONDS).getKeyValue().getKey());
+            Assert.assertEquals("watch/other", prefixEvents.poll(5, TimeUnit.SECONDS).getKeyValue().getKey());
+            Assert.assertNotEquals(w1.getWatchId(), w2.getWatchId());
+            Assert.assertEquals(event.getKeyValue().getModRevision(), w1.getRevision());
+
+            w1.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testStartRevision() throws Exception {
+        try (Etcd etcd = Etcd.builder().endpoint(cluster.cluster().getClientEndpoints().get(0)).build()) {
+            long revision = etcd.put("watch/rev", "v1").get().getHeader().getRevision();
+            etcd.put("watch/rev", "v2").get();
+
+            BlockingQueue<List<Event>> events = new LinkedBlockingQueue<>();
+
+            try (Watcher watcher = etcd.watch("watch/rev").startRevision(revision).listen(r -> events.add(r.getEvents()))) {
+                List<Event> received = events.poll(5, TimeUnit.SECONDS);
+
+                Assert.assertNotNull(received);
+                Assert.assertEquals(2, received.size());
+                Assert.assertEquals("v1", received.get(0).getKeyValue().getValue());
+                Assert.assertEquals("v2", received.get(1).getKeyValue().getValue());
+            }
+        }
+    }
+
+    private static void awaitCreated(Watcher watcher) throws InterruptedException {
+        while (watcher.getWatchId() == -1) {
+            Thread.sleep(10);
+        }
+    }
+}
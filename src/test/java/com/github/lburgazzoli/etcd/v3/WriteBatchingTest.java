@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.etcd.v3.support.EtcdClusterResource;
+import com.github.lburgazzoli.etcd.v3.support.InProcessEtcd;
+import io.grpc.Status;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class WriteBatchingTest {
+    private static final InProcessEtcd server = new InProcessEtcd("write-batching").user("root", "secret");
+
+    @ClassRule
+    public static final EtcdClusterResource cluster = new EtcdClusterResource(server);
+
+    @Test(timeout = 10000)
+    public void testBatching() throws Exception {
+        try (Etcd etcd = cluster.client(b -> b.writeBatching(true).writeBatchWindow(50L, TimeUnit.MILLISECONDS))) {
+            etcd.put("write-batching/batch/warmup", "v").get();
+
+            List<CompletableFuture<PutResponse>> puts = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                puts.add(etcd.put("write-batching/batch/key-" + i, "v" + i).send());
+            }
+
+            // all the puts are applied by the same txn
+            long revision = puts.get(0).get().getHeader().getRevision();
+            for (int i = 0; i < 10; i++) {
+                Assert.assertEquals(revision, puts.get(i).get().getHeader().getRevision());
+                Assert.assertEquals("v" + i, etcd.get("write-batching/batch/key-" + i).get().getKvs().get(0).getValue());
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testOrdering() throws Exception {
+        Etcd.Builder builder = Etcd.builder()
+            .writeBatching(true)
+            .writeBatchWindow(5L, TimeUnit.MILLISECONDS)
+            .writeBatchMaxInFlight(4);
+
+        try (Etcd etcd = cluster.client(builder)) {
+            etcd.put("write-batching/ordering/key", "v").get();
+
+            // with jitter, batches sent concurrently may be applied out of order
+            server.latency(0, 100, TimeUnit.MILLISECONDS);
+
+            List<CompletableFuture<PutResponse>> puts = new ArrayList<>();
+            List<CompletableFuture<PutResponse>> others = new ArrayList<>();
+
+            try {
+                for (int i = 0; i < 10; i++) {
+                    puts.add(etcd.put("write-batching/ordering/key", "v" + i).send());
+                    others.add(etcd.put("write-batching/ordering/other-" + i, "v" + i).send());
+
+                    // let the batch go before filling the next one
+                    Thread.sleep(10);
+                }
+
+                for (int i = 1; i < puts.size(); i++) {
+                    Assert.assertTrue(puts.get(i - 1).get().getHeader().getRevision() < puts.get(i).get().getHeader().getRevision());
+                }
+                for (CompletableFuture<PutResponse> other : others) {
+                    Assert.assertNotNull(other.get());
+                }
+            } finally {
+                server.latency(0, 0, TimeUnit.MILLISECONDS);
+            }
+
+            Assert.assertEquals("v9", etcd.get("write-batching/ordering/key").get().getKvs().get(0).getValue());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testConflict() throws Exception {
+        try (Etcd etcd = cluster.client(b -> b.writeBatching(true).writeBatchWindow(50L, TimeUnit.MILLISECONDS))) {
+            etcd.put("write-batching/conflict/warmup", "v").get();
+
+            // etcd rejects a txn writing the same key twice, each write goes
+            // in its own batch
+            CompletableFuture<PutResponse> first = etcd.put("write-batching/conflict/key", "v1").send();
+            CompletableFuture<DeleteResponse> delete = etcd.delete("write-batching/conflict/key").send();
+            CompletableFuture<PutResponse> second = etcd.put("write-batching/conflict/key", "v2").send();
+
+            Assert.assertEquals(1, delete.get().getDeleted());
+            Assert.assertTrue(first.get().getHeader().getRevision() < delete.get().getHeader().getRevision());
+            Assert.assertTrue(delete.get().getHeader().getRevision() < second.get().getHeader().getRevision());
+            Assert.assertEquals("v2", etcd.get("write-batching/conflict/key").get().getKvs().get(0).getValue());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testDeadline() throws Exception {
+        Etcd.Builder builder = Etcd.builder()
+            .writeBatching(true)
+            .writeBatchMaxInFlight(1)
+            .defaultDeadline(5L, TimeUnit.SECONDS);
+
+        try (Etcd etcd = cluster.client(builder)) {
+            etcd.put("write-batching/deadline/warmup", "v").get();
+
+            server.latency(200, 0, TimeUnit.MILLISECONDS);
+
+            try {
+                CompletableFuture<PutResponse> put = etcd.put("write-batching/deadline/key-1", "v").send();
+                CompletableFuture<PutResponse> sent = etcd.put("write-batching/deadline/key-2", "v").deadline(50, TimeUnit.MILLISECONDS).send();
+
+                // exceeded while queued behind the batch in flight
+                assertDeadlineExceeded(sent);
+                Assert.assertNotNull(put.get());
+
+                // exceeded while in flight
+                assertDeadlineExceeded(etcd.delete("write-batching/deadline/key-1").deadline(50, TimeUnit.MILLISECONDS).send());
+            } finally {
+                server.latency(0, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testOperationFailure() throws Exception {
+        try (Etcd etcd = cluster.client(b -> b.writeBatching(true).writeBatchWindow(50L, TimeUnit.MILLISECONDS))) {
+            etcd.put("write-batching/failure/warmup", "v").get();
+
+            CompletableFuture<PutResponse> first = etcd.put("write-batching/failure/key-1", "v").send();
+            CompletableFuture<PutResponse> unknownLease = etcd.put("write-batching/failure/key-2", "v", 123456789L).send();
+            CompletableFuture<DeleteResponse> delete = etcd.delete("write-batching/failure/warmup").send();
+
+            // only the put with an unknown lease fails
+            Assert.assertNotNull(first.get());
+            Assert.assertEquals(1, delete.get().getDeleted());
+
+            try {
+                unknownLease.get();
+                Assert.fail("Expected the put to fail");
+            } catch (ExecutionException e) {
+                Assert.assertEquals(Status.Code.NOT_FOUND, Status.fromThrowable(e).getCode());
+            }
+
+            Assert.assertEquals(1, etcd.get("write-batching/failure/key-1").get().getCount());
+            Assert.assertEquals(0, etcd.get("write-batching/failure/key-2").get().getCount());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCallbacksOutsideLock() throws Exception {
+        Etcd.Builder builder = Etcd.builder()
+            .writeBatching(true)
+            .writeBatchMaxInFlight(1)
+            .completionMode(CompletionMode.DIRECT);
+
+        try (Etcd etcd = cluster.client(builder)) {
+            etcd.put("write-batching/callback/warmup", "v").get();
+
+            server.latency(200, 0, TimeUnit.MILLISECONDS);
+
+            try {
+                CompletableFuture<PutResponse> put = etcd.put("write-batching/callback/key-1", "v").send();
+                CompletableFuture<Boolean> written = new CompletableFuture<>();
+
+                // the queued put expires, its callback writes from another thread
+                etcd.put("write-batching/callback/key-2", "v").deadline(50, TimeUnit.MILLISECONDS).send().whenComplete((r, t) -> {
+                    Thread thread = new Thread(() -> etcd.put("write-batching/callback/key-3", "v").send());
+                    thread.start();
+
+                    try {
+                        thread.join(1000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    written.complete(!thread.isAlive());
+                });
+
+                Assert.assertTrue(written.get());
+                Assert.assertNotNull(put.get());
+            } finally {
+                server.latency(0, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testClose() throws Exception {
+        CompletableFuture<PutResponse> put;
+
+        try (Etcd etcd = cluster.client(b -> b.writeBatching(true).writeBatchWindow(1L, TimeUnit.MINUTES))) {
+            put = etcd.put("write-batching/close/key", "v").send();
+        }
+
+        try {
+            put.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the pending put to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static void assertDeadlineExceeded(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get();
+            Assert.fail("Expected the deadline to be exceeded");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(Status.Code.DEADLINE_EXCEEDED, Status.fromThrowable(e).getCode());
+        }
+    }
+}
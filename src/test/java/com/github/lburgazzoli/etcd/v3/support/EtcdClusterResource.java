@@ -16,6 +16,9 @@
 
 package com.github.lburgazzoli.etcd.v3.support;
 
+import java.util.function.Consumer;
+
+import com.github.lburgazzoli.etcd.v3.Etcd;
 import org.junit.rules.ExternalResource;
 
 public class EtcdClusterResource extends ExternalResource {
@@ -26,13 +29,50 @@ public class EtcdClusterResource extends ExternalResource {
   }
 
   public EtcdClusterResource(String clusterName, boolean ssl) {
-    this.cluster = EtcdClusterFactory.buildCluster(clusterName, 1, ssl);
+    this(clusterName, 1, ssl);
+  }
+
+  public EtcdClusterResource(String clusterName, int nodes, boolean ssl) {
+    this.cluster = EtcdClusterFactory.buildCluster(clusterName, nodes, ssl);
+  }
+
+  public EtcdClusterResource(EtcdCluster cluster) {
+    this.cluster = cluster;
   }
 
   public EtcdCluster cluster() {
     return cluster;
   }
 
+  /**
+   * @return a client connected to the cluster
+   */
+  public Etcd client() {
+    return client(Etcd.builder());
+  }
+
+  /**
+   * @param customizer configures the client before it is built
+   * @return a client connected to the cluster
+   */
+  public Etcd client(Consumer<Etcd.Builder> customizer) {
+    final Etcd.Builder builder = Etcd.builder();
+    customizer.accept(builder);
+
+    return client(builder);
+  }
+
+  /**
+   * @return a client built from the given builder and connected to the cluster,
+   *         in-process members go through the in-process transport and log in
+   *         with their user
+   */
+  public Etcd client(Etcd.Builder builder) {
+    return cluster instanceof InProcessEtcd
+      ? ((InProcessEtcd)cluster).client(builder)
+      : builder.endpoints(cluster.getClientEndpoints()).build();
+  }
+
   @Override
   protected void before() throws Throwable {
     this.cluster.start();
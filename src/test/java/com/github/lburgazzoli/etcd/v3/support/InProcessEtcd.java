@@ -0,0 +1,724 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3.support;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+
+import com.github.lburgazzoli.etcd.v3.Etcd;
+import com.github.lburgazzoli.etcd.v3.api.AlarmMember;
+import com.github.lburgazzoli.etcd.v3.api.AlarmRequest;
+import com.github.lburgazzoli.etcd.v3.api.AlarmResponse;
+import com.github.lburgazzoli.etcd.v3.api.AlarmType;
+import com.github.lburgazzoli.etcd.v3.api.AuthGrpc;
+import com.github.lburgazzoli.etcd.v3.api.AuthenticateRequest;
+import com.github.lburgazzoli.etcd.v3.api.AuthenticateResponse;
+import com.github.lburgazzoli.etcd.v3.api.ClusterGrpc;
+import com.github.lburgazzoli.etcd.v3.api.CompactionRequest;
+import com.github.lburgazzoli.etcd.v3.api.CompactionResponse;
+import com.github.lburgazzoli.etcd.v3.api.DeleteRangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.DeleteRangeResponse;
+import com.github.lburgazzoli.etcd.v3.api.Event;
+import com.github.lburgazzoli.etcd.v3.api.KVGrpc;
+import com.github.lburgazzoli.etcd.v3.api.LeaseGrantRequest;
+import com.github.lburgazzoli.etcd.v3.api.LeaseGrantResponse;
+import com.github.lburgazzoli.etcd.v3.api.LeaseGrpc;
+import com.github.lburgazzoli.etcd.v3.api.LeaseKeepAliveRequest;
+import com.github.lburgazzoli.etcd.v3.api.LeaseKeepAliveResponse;
+import com.github.lburgazzoli.etcd.v3.api.LeaseRevokeRequest;
+import com.github.lburgazzoli.etcd.v3.api.LeaseRevokeResponse;
+import com.github.lburgazzoli.etcd.v3.api.LeaseTimeToLiveRequest;
+import com.github.lburgazzoli.etcd.v3.api.LeaseTimeToLiveResponse;
+import com.github.lburgazzoli.etcd.v3.api.MaintenanceGrpc;
+import com.github.lburgazzoli.etcd.v3.api.Member;
+import com.github.lburgazzoli.etcd.v3.api.MemberListRequest;
+import com.github.lburgazzoli.etcd.v3.api.MemberListResponse;
+import com.github.lburgazzoli.etcd.v3.api.PutRequest;
+import com.github.lburgazzoli.etcd.v3.api.PutResponse;
+import com.github.lburgazzoli.etcd.v3.api.RangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.RangeResponse;
+import com.github.lburgazzoli.etcd.v3.api.StatusRequest;
+import com.github.lburgazzoli.etcd.v3.api.StatusResponse;
+import com.github.lburgazzoli.etcd.v3.api.TxnRequest;
+import com.github.lburgazzoli.etcd.v3.api.TxnResponse;
+import com.github.lburgazzoli.etcd.v3.api.WatchGrpc;
+import com.github.lburgazzoli.etcd.v3.api.WatchRequest;
+import com.github.lburgazzoli.etcd.v3.api.WatchResponse;
+import io.grpc.BindableService;
+import io.grpc.Context;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * An embeddable stand-in for a single etcd member, implementing the KV, Watch,
+ * Lease and Auth services on top of an in-memory {@link MvccStore}.
+ *
+ * The server is always reachable through gRPC's in-process transport by its
+ * name and, if a port is given, on a local port too. Unary calls can be slowed
+ * down and any call can be failed at random to measure how the client behaves
+ * under latency and faults without a real cluster.
+ */
+public class InProcessEtcd implements EtcdCluster {
+    private static final Metadata.Key<String> TOKEN = Metadata.Key.of("token", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final String name;
+    private final int port;
+    private final MvccStore store;
+    private final Map<String, String> users;
+    private final Set<String> tokens;
+    private final AtomicLong tokenSequence;
+    private final AtomicInteger failNext;
+    private final AtomicInteger delayed;
+    private final AtomicLong cancelled;
+    private final Set<WatchStream> watchStreams;
+    private volatile long latency;
+    private volatile long jitter;
+    private volatile double failureRate;
+    private volatile Status failureStatus;
+    private volatile long dbSize;
+    private volatile AlarmType alarm;
+    private volatile long leader;
+    private volatile String user;
+    private Server inProcessServer;
+    private Server server;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a member reachable only through the in-process transport.
+     */
+    public InProcessEtcd(String name) {
+        this(name, -1);
+    }
+
+    /**
+     * Creates a member reachable through the in-process transport and on the
+     * given local port, 0 to pick a free one.
+     */
+    public InProcessEtcd(String name, int port) {
+        this.name = name;
+        this.port = port;
+        this.store = new MvccStore(name.hashCode() & Integer.MAX_VALUE, 1);
+        this.users = new ConcurrentHashMap<>();
+        this.tokens = ConcurrentHashMap.newKeySet();
+        this.tokenSequence = new AtomicLong();
+        this.failNext = new AtomicInteger();
+        this.delayed = new AtomicInteger();
+        this.cancelled = new AtomicLong();
+        this.watchStreams = ConcurrentHashMap.newKeySet();
+        this.failureStatus = Status.UNAVAILABLE;
+        this.alarm = AlarmType.NONE;
+        this.leader = store.header().getMemberId();
+    }
+
+    // **********************************
+    // Settings
+    // **********************************
+
+    /**
+     * Adds a user, once there is at least one user all the calls but
+     * authenticate require a valid token.
+     */
+    public InProcessEtcd user(String user, String password) {
+        users.put(user, password);
+
+        if (this.user == null) {
+            this.user = user;
+        }
+
+        return this;
+    }
+
+    /**
+     * Delays every unary call by the given latency plus a random amount up to
+     * the given jitter.
+     */
+    public InProcessEtcd latency(long latency, long jitter, TimeUnit unit) {
+        this.latency = unit.toNanos(latency);
+        this.jitter = unit.toNanos(jitter);
+        return this;
+    }
+
+    /**
+     * Fails the given ratio of the calls, 0 to 1, with the given status.
+     */
+    public InProcessEtcd failures(double failureRate, Status failureStatus) {
+        this.failureRate = failureRate;
+        this.failureStatus = failureStatus;
+        return this;
+    }
+
+    /**
+     * Fails the next given number of calls with the given status, described as
+     * an injected failure unless it has a description.
+     */
+    public InProcessEtcd failNext(int count, Status failureStatus) {
+        this.failureStatus = failureStatus;
+        this.failNext.set(count);
+        return this;
+    }
+
+    /**
+     * Sets the size of the backend database reported by the status of the member.
+     */
+    public InProcessEtcd dbSize(long dbSize) {
+        this.dbSize = dbSize;
+        return this;
+    }
+
+    /**
+     * Raises the given alarm, {@link AlarmType#NONE} to clear it.
+     */
+    public InProcessEtcd alarm(AlarmType alarm) {
+        this.alarm = alarm;
+        return this;
+    }
+
+    /**
+     * Simulates an election: the given member, possibly not this one, is
+     * reported as the leader and responses carry the given raft term.
+     */
+    public InProcessEtcd leader(long leader, long raftTerm) {
+        this.leader = leader;
+        this.store.raftTerm(raftTerm);
+        return this;
+    }
+
+    /**
+     * Invalidates all the tokens handed out so far, as if they expired.
+     */
+    public void invalidateTokens() {
+        tokens.clear();
+    }
+
+    /**
+     * Fails all the open watch streams with the given status.
+     */
+    public void failWatches(Status status) {
+        for (WatchStream stream : watchStreams) {
+            stream.fail(status);
+        }
+    }
+
+    /**
+     * Builds a client connected to this member through the in-process
+     * transport, authenticated as the first user added, if any.
+     */
+    public Etcd client(Etcd.Builder builder) {
+        final String user = this.user;
+        if (user != null) {
+            builder.user(user).password(users.get(user));
+        }
+
+        return builder.inProcessServer(name).build();
+    }
+
+    /**
+     * @return the number of calls currently delayed by the injected latency
+     */
+    public int delayedCalls() {
+        return delayed.get();
+    }
+
+    /**
+     * @return the number of calls cancelled by the client while delayed
+     */
+    public long cancelledCalls() {
+        return cancelled.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long revision() {
+        return store.revision();
+    }
+
+    public void compact(long revision) {
+        store.compact(revision);
+    }
+
+    // **********************************
+    // Lifecycle
+    // **********************************
+
+    @Override
+    public synchronized void start() {
+        final ServerServiceDefinition[] services = {
+            intercept(new KV()),
+            intercept(new Watch()),
+            intercept(new Lease()),
+            intercept(new Auth()),
+            intercept(new Maintenance()),
+            intercept(new Cluster())
+        };
+
+        try {
+            final InProcessServerBuilder inProcess = InProcessServerBuilder.forName(name);
+            for (ServerServiceDefinition service : services) {
+                inProcess.addService(service);
+            }
+
+            inProcessServer = inProcess.build().start();
+
+            if (port >= 0) {
+                final NettyServerBuilder netty = NettyServerBuilder.forPort(port);
+                for (ServerServiceDefinition service : services) {
+                    netty.addService(service);
+                }
+
+                server = netty.build().start();
+            }
+        } catch (IOException e) {
+            close();
+            throw new IllegalStateException(e);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "etcd-" + name + "-leases");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        scheduler.scheduleWithFixedDelay(store::expire, 100, 100, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (server != null) {
+            server.shutdownNow();
+            server = null;
+        }
+        if (inProcessServer != null) {
+            inProcessServer.shutdownNow();
+            inProcessServer = null;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public synchronized List<String> getClientEndpoints() {
+        if (server == null) {
+            return Collections.emptyList();
+        }
+
+        return Collections.singletonList("localhost:" + server.getPort());
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getPeerEndpoints() {
+        return Collections.emptyList();
+    }
+
+    // **********************************
+    // Helpers
+    // **********************************
+
+    private ServerServiceDefinition intercept(BindableService service) {
+        // the last interceptor is invoked first
+        return ServerInterceptors.intercept(service, new AuthInterceptor(), new FaultInterceptor());
+    }
+
+    private static <T> void unary(StreamObserver<T> observer, Supplier<T> supplier) {
+        final T response;
+
+        try {
+            response = supplier.get();
+        } catch (StatusRuntimeException e) {
+            observer.onError(e);
+            return;
+        }
+
+        observer.onNext(response);
+        observer.onCompleted();
+    }
+
+    // **********************************
+    // Services
+    // **********************************
+
+    private final class KV extends KVGrpc.KVImplBase {
+        @Override
+        public void range(RangeRequest request, StreamObserver<RangeResponse> observer) {
+            unary(observer, () -> store.range(request));
+        }
+
+        @Override
+        public void put(PutRequest request, StreamObserver<PutResponse> observer) {
+            unary(observer, () -> store.put(request));
+        }
+
+        @Override
+        public void deleteRange(DeleteRangeRequest request, StreamObserver<DeleteRangeResponse> observer) {
+            unary(observer, () -> store.deleteRange(request));
+        }
+
+        @Override
+        public void txn(TxnRequest request, StreamObserver<TxnResponse> observer) {
+            unary(observer, () -> store.txn(request));
+        }
+
+        @Override
+        public void compact(CompactionRequest request, StreamObserver<CompactionResponse> observer) {
+            unary(observer, () -> {
+                store.compact(request.getRevision());
+                return CompactionResponse.newBuilder().setHeader(store.header()).build();
+            });
+        }
+    }
+
+    private final class Watch extends WatchGrpc.WatchImplBase {
+        @Override
+        public StreamObserver<WatchRequest> watch(StreamObserver<WatchResponse> observer) {
+            return new WatchStream(observer);
+        }
+    }
+
+    private final class WatchStream implements StreamObserver<WatchRequest> {
+        private final StreamObserver<WatchResponse> observer;
+        private final Map<Long, MvccStore.Watcher> watchers;
+        private final AtomicLong watchId;
+
+        WatchStream(StreamObserver<WatchResponse> observer) {
+            this.observer = observer;
+            this.watchers = new ConcurrentHashMap<>();
+            this.watchId = new AtomicLong();
+
+            watchStreams.add(this);
+        }
+
+        @Override
+        public void onNext(WatchRequest request) {
+            if (request.hasCreateRequest()) {
+                final long id = watchId.getAndIncrement();
+
+                // sent before registering the watcher so it precedes any event
+                send(WatchResponse.newBuilder().setWatchId(id).setCreated(true));
+
+                final MvccStore.Watcher watcher = store.watch(
+                    request.getCreateRequest(),
+                    events -> send(id, events));
+
+                if (watcher == null) {
+                    send(WatchResponse.newBuilder()
+                        .setWatchId(id)
+                        .setCanceled(true)
+                        .setCompactRevision(store.compacted())
+                        .setCancelReason("etcdserver: mvcc: required revision has been compacted"));
+                } else {
+                    watchers.put(id, watcher);
+                }
+            } else if (request.hasCancelRequest()) {
+                final long id = request.getCancelRequest().getWatchId();
+                final MvccStore.Watcher watcher = watchers.remove(id);
+
+                if (watcher != null) {
+                    store.cancel(watcher);
+                    send(WatchResponse.newBuilder().setWatchId(id).setCanceled(true));
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            cancelAll();
+        }
+
+        @Override
+        public void onCompleted() {
+            cancelAll();
+
+            synchronized (observer) {
+                observer.onCompleted();
+            }
+        }
+
+        void fail(Status status) {
+            cancelAll();
+
+            synchronized (observer) {
+                observer.onError(status.asRuntimeException());
+            }
+        }
+
+        private void cancelAll() {
+            watchStreams.remove(this);
+
+            for (MvccStore.Watcher watcher : watchers.values()) {
+                store.cancel(watcher);
+            }
+
+            watchers.clear();
+        }
+
+        private void send(long id, List<Event> events) {
+            send(WatchResponse.newBuilder().setWatchId(id).addAllEvents(events));
+        }
+
+        private void send(WatchResponse.Builder response) {
+            response.setHeader(store.header());
+
+            synchronized (observer) {
+                try {
+                    observer.onNext(response.build());
+                } catch (RuntimeException e) {
+                    // the call has been cancelled in the meantime
+                }
+            }
+        }
+    }
+
+    private final class Lease extends LeaseGrpc.LeaseImplBase {
+        @Override
+        public void leaseGrant(LeaseGrantRequest request, StreamObserver<LeaseGrantResponse> observer) {
+            unary(observer, () -> {
+                final long id = store.grant(request.getID(), request.getTTL());
+
+                return LeaseGrantResponse.newBuilder()
+                    .setHeader(store.header())
+                    .setID(id)
+                    .setTTL(request.getTTL())
+                    .build();
+            });
+        }
+
+        @Override
+        public void leaseRevoke(LeaseRevokeRequest request, StreamObserver<LeaseRevokeResponse> observer) {
+            unary(observer, () -> {
+                store.revoke(request.getID());
+                return LeaseRevokeResponse.newBuilder().setHeader(store.header()).build();
+            });
+        }
+
+        @Override
+        public void leaseTimeToLive(LeaseTimeToLiveRequest request, StreamObserver<LeaseTimeToLiveResponse> observer) {
+            unary(observer, () -> {
+                final LeaseTimeToLiveResponse.Builder response = LeaseTimeToLiveResponse.newBuilder()
+                    .setHeader(store.header())
+                    .setID(request.getID());
+
+                synchronized (store) {
+                    final MvccStore.LeaseEntry lease = store.lease(request.getID());
+
+                    if (lease == null) {
+                        response.setTTL(-1);
+                    } else {
+                        response.setTTL(lease.remaining());
+                        response.setGrantedTTL(lease.ttl);
+
+                        if (request.getKeys()) {
+                            response.addAllKeys(lease.keys);
+                        }
+                    }
+                }
+
+                return response.build();
+            });
+        }
+
+        @Override
+        public StreamObserver<LeaseKeepAliveRequest> leaseKeepAlive(StreamObserver<LeaseKeepAliveResponse> observer) {
+            return new StreamObserver<LeaseKeepAliveRequest>() {
+                @Override
+                public void onNext(LeaseKeepAliveRequest request) {
+                    final long ttl = store.keepAlive(request.getID());
+
+                    synchronized (observer) {
+                        observer.onNext(
+                            LeaseKeepAliveResponse.newBuilder()
+                                .setHeader(store.header())
+                                .setID(request.getID())
+                                .setTTL(ttl)
+                                .build()
+                        );
+                    }
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    synchronized (observer) {
+                        observer.onCompleted();
+                    }
+                }
+            };
+        }
+    }
+
+    private final class Auth extends AuthGrpc.AuthImplBase {
+        @Override
+        public void authenticate(AuthenticateRequest request, StreamObserver<AuthenticateResponse> observer) {
+            unary(observer, () -> {
+                if (users.isEmpty()) {
+                    throw Status.FAILED_PRECONDITION.withDescription("etcdserver: authentication is not enabled").asRuntimeException();
+                }
+                if (!request.getPassword().equals(users.get(request.getName()))) {
+                    throw Status.INVALID_ARGUMENT.withDescription("etcdserver: authentication failed, invalid user ID or password").asRuntimeException();
+                }
+
+                final String token = request.getName() + "." + tokenSequence.incrementAndGet();
+                tokens.add(token);
+
+                return AuthenticateResponse.newBuilder()
+                    .setHeader(store.header())
+                    .setToken(token)
+                    .build();
+            });
+        }
+    }
+
+    private final class Maintenance extends MaintenanceGrpc.MaintenanceImplBase {
+        @Override
+        public void status(StatusRequest request, StreamObserver<StatusResponse> observer) {
+            unary(observer, () -> StatusResponse.newBuilder()
+                .setHeader(store.header())
+                .setVersion("3.3.0")
+                .setDbSize(dbSize)
+                .setLeader(leader)
+                .setRaftTerm(store.header().getRaftTerm())
+                .build());
+        }
+
+        @Override
+        public void alarm(AlarmRequest request, StreamObserver<AlarmResponse> observer) {
+            unary(observer, () -> {
+                final AlarmResponse.Builder response = AlarmResponse.newBuilder().setHeader(store.header());
+                final AlarmType raised = alarm;
+
+                if (raised != AlarmType.NONE) {
+                    response.addAlarms(AlarmMember.newBuilder().setMemberID(store.header().getMemberId()).setAlarm(raised));
+                }
+
+                return response.build();
+            });
+        }
+    }
+
+    private final class Cluster extends ClusterGrpc.ClusterImplBase {
+        @Override
+        public void memberList(MemberListRequest request, StreamObserver<MemberListResponse> observer) {
+            unary(observer, () -> MemberListResponse.newBuilder()
+                .setHeader(store.header())
+                .addMembers(Member.newBuilder()
+                    .setID(store.header().getMemberId())
+                    .setName(name)
+                    .addAllClientURLs(getClientEndpoints()))
+                .build());
+        }
+    }
+
+    // **********************************
+    // Interceptors
+    // **********************************
+
+    private final class AuthInterceptor implements ServerInterceptor {
+        @Override
+        public <Q, A> ServerCall.Listener<Q> interceptCall(ServerCall<Q, A> call, Metadata headers, ServerCallHandler<Q, A> next) {
+            if (!users.isEmpty() && !AuthGrpc.getAuthenticateMethod().getFullMethodName().equals(call.getMethodDescriptor().getFullMethodName())) {
+                final String token = headers.get(TOKEN);
+
+                if (token == null || !tokens.contains(token)) {
+                    call.close(Status.UNAUTHENTICATED.withDescription("etcdserver: invalid auth token"), new Metadata());
+                    return new ServerCall.Listener<Q>() {
+                    };
+                }
+            }
+
+            return next.startCall(call, headers);
+        }
+    }
+
+    private final class FaultInterceptor implements ServerInterceptor {
+        @Override
+        public <Q, A> ServerCall.Listener<Q> interceptCall(ServerCall<Q, A> call, Metadata headers, ServerCallHandler<Q, A> next) {
+            final double rate = failureRate;
+
+            if (failNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate)) {
+                final Status status = failureStatus;
+                call.close(status.getDescription() != null ? status : status.withDescription("injected failure"), new Metadata());
+                return new ServerCall.Listener<Q>() {
+                };
+            }
+
+            final long delay = latency + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0);
+            final ServerCall.Listener<Q> listener = next.startCall(call, headers);
+
+            if (delay <= 0 || !call.getMethodDescriptor().getType().clientSendsOneMessage()) {
+                return listener;
+            }
+
+            return new ForwardingServerCallListener.SimpleForwardingServerCallListener<Q>(listener) {
+                @Override
+                public void onHalfClose() {
+                    // the server runs calls on a cached thread pool, parking
+                    // here delays this call only
+                    final long deadline = System.nanoTime() + delay;
+                    final Context context = Context.current();
+
+                    delayed.incrementAndGet();
+
+                    try {
+                        for (long left = delay; left > 0; left = deadline - System.nanoTime()) {
+                            if (context.isCancelled()) {
+                                cancelled.incrementAndGet();
+                                return;
+                            }
+
+                            LockSupport.parkNanos(Math.min(left, TimeUnit.MILLISECONDS.toNanos(10)));
+                        }
+                    } finally {
+                        delayed.decrementAndGet();
+                    }
+
+                    super.onHalfClose();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,662 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.github.lburgazzoli.etcd.v3.api.Compare;
+import com.github.lburgazzoli.etcd.v3.api.DeleteRangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.DeleteRangeResponse;
+import com.github.lburgazzoli.etcd.v3.api.Event;
+import com.github.lburgazzoli.etcd.v3.api.KeyValue;
+import com.github.lburgazzoli.etcd.v3.api.PutRequest;
+import com.github.lburgazzoli.etcd.v3.api.PutResponse;
+import com.github.lburgazzoli.etcd.v3.api.RangeRequest;
+import com.github.lburgazzoli.etcd.v3.api.RangeResponse;
+import com.github.lburgazzoli.etcd.v3.api.RequestOp;
+import com.github.lburgazzoli.etcd.v3.api.ResponseHeader;
+import com.github.lburgazzoli.etcd.v3.api.ResponseOp;
+import com.github.lburgazzoli.etcd.v3.api.TxnRequest;
+import com.github.lburgazzoli.etcd.v3.api.TxnResponse;
+import com.github.lburgazzoli.etcd.v3.api.WatchCreateRequest;
+import com.github.lburgazzoli.etcd.v3.util.ByteStrings;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+
+/**
+ * An in-memory multi version key value store with the semantics of the etcd
+ * one: every write creates a new revision, every key keeps its versions until
+ * compacted, watchers receive the events of the writes in revision order and
+ * keys attached to a lease are deleted when it is revoked or expires.
+ *
+ * All the operations are serialized by the store monitor, watchers are
+ * notified while holding it so they must not block.
+ */
+final class MvccStore {
+    private final long clusterId;
+    private final long memberId;
+    private final NavigableMap<ByteString, List<KeyValue>> keys;
+    private final List<Event> events;
+    private final List<Watcher> watchers;
+    private final Map<Long, LeaseEntry> leases;
+    private long revision;
+    private long compacted;
+    private long nextLease;
+    private long raftTerm;
+
+    MvccStore(long clusterId, long memberId) {
+        this.clusterId = clusterId;
+        this.memberId = memberId;
+        this.keys = new TreeMap<>(ByteStrings.COMPARATOR);
+        this.events = new ArrayList<>();
+        this.watchers = new ArrayList<>();
+        this.leases = new HashMap<>();
+        this.revision = 1;
+        this.compacted = 0;
+        this.nextLease = 1;
+        this.raftTerm = 1;
+    }
+
+    synchronized long revision() {
+        return revision;
+    }
+
+    synchronized long compacted() {
+        return compacted;
+    }
+
+    synchronized void raftTerm(long raftTerm) {
+        this.raftTerm = raftTerm;
+    }
+
+    synchronized ResponseHeader header() {
+        return ResponseHeader.newBuilder()
+            .setClusterId(clusterId)
+            .setMemberId(memberId)
+            .setRevision(revision)
+            .setRaftTerm(raftTerm)
+            .build();
+    }
+
+    // **********************************
+    // KV
+    // **********************************
+
+    synchronized RangeResponse range(RangeRequest request) {
+        return range(request, revision);
+    }
+
+    synchronized PutResponse put(PutRequest request) {
+        final List<Event> changes = new ArrayList<>();
+        final PutResponse response = put(request, revision + 1, changes);
+
+        commit(changes);
+
+        return response.toBuilder().setHeader(header()).build();
+    }
+
+    synchronized DeleteRangeResponse deleteRange(DeleteRangeRequest request) {
+        final List<Event> changes = new ArrayList<>();
+        final DeleteRangeResponse response = deleteRange(request, revision + 1, changes);
+
+        commit(changes);
+
+        return response.toBuilder().setHeader(header()).build();
+    }
+
+    synchronized TxnResponse txn(TxnRequest request) {
+        boolean succeeded = true;
+        for (Compare compare : request.getCompareList()) {
+            succeeded &= compare(compare);
+        }
+
+        final List<RequestOp> ops = succeeded ? request.getSuccessList() : request.getFailureList();
+
+        // a txn is atomic, it is rejected before any of its operations is applied
+        for (RequestOp op : ops) {
+            if (op.getRequestCase() == RequestOp.RequestCase.REQUEST_PUT) {
+                check(op.getRequestPut());
+            }
+        }
+
+        final List<Event> changes = new ArrayList<>();
+        final TxnResponse.Builder response = TxnResponse.newBuilder().setSucceeded(succeeded);
+
+        for (RequestOp op : ops) {
+            switch (op.getRequestCase()) {
+            case REQUEST_RANGE:
+                response.addResponses(ResponseOp.newBuilder().setResponseRange(range(op.getRequestRange(), changes.isEmpty() ? revision : revision + 1)));
+                break;
+            case REQUEST_PUT:
+                response.addResponses(ResponseOp.newBuilder().setResponsePut(put(op.getRequestPut(), revision + 1, changes)));
+                break;
+            case REQUEST_DELETE_RANGE:
+                response.addResponses(ResponseOp.newBuilder().setResponseDeleteRange(deleteRange(op.getRequestDeleteRange(), revision + 1, changes)));
+                break;
+            default:
+                break;
+            }
+        }
+
+        commit(changes);
+
+        return response.setHeader(header()).build();
+    }
+
+    /**
+     * Discards the versions and the events superseded at the given revision.
+     */
+    synchronized void compact(long rev) {
+        if (rev <= compacted) {
+            throw Status.OUT_OF_RANGE.withDescription("etcdserver: mvcc: required revision has been compacted").asRuntimeException();
+        }
+        if (rev > revision) {
+            throw Status.OUT_OF_RANGE.withDescription("etcdserver: mvcc: required revision is a future revision").asRuntimeException();
+        }
+
+        for (Iterator<List<KeyValue>> it = keys.values().iterator(); it.hasNext();) {
+            final List<KeyValue> versions = it.next();
+
+            int live = -1;
+            for (int i = 0; i < versions.size() && versions.get(i).getModRevision() <= rev; i++) {
+                live = i;
+            }
+
+            if (live > 0) {
+                versions.subList(0, live).clear();
+            }
+            if (versions.get(0).getModRevision() <= rev && isTombstone(versions.get(0))) {
+                versions.remove(0);
+            }
+            if (versions.isEmpty()) {
+                it.remove();
+            }
+        }
+
+        events.removeIf(e -> e.getKv().getModRevision() <= rev);
+        compacted = rev;
+    }
+
+    // **********************************
+    // Watch
+    // **********************************
+
+    /**
+     * Registers a watcher, the events from the requested start revision are
+     * replayed before returning.
+     *
+     * @return null if the start revision has been compacted
+     */
+    synchronized Watcher watch(WatchCreateRequest request, Consumer<List<Event>> listener) {
+        final Watcher watcher = new Watcher(request, listener);
+
+        if (request.getStartRevision() > 0 && request.getStartRevision() <= compacted) {
+            return null;
+        }
+
+        if (request.getStartRevision() > 0) {
+            final List<Event> replay = new ArrayList<>();
+            for (Event event : events) {
+                if (event.getKv().getModRevision() >= request.getStartRevision()) {
+                    replay.add(event);
+                }
+            }
+
+            watcher.notify(replay);
+        }
+
+        watchers.add(watcher);
+
+        return watcher;
+    }
+
+    synchronized void cancel(Watcher watcher) {
+        watchers.remove(watcher);
+    }
+
+    // **********************************
+    // Lease
+    // **********************************
+
+    synchronized long grant(long id, long ttl) {
+        if (id == 0) {
+            while (leases.containsKey(nextLease)) {
+                nextLease++;
+            }
+            id = nextLease++;
+        } else if (leases.containsKey(id)) {
+            throw Status.FAILED_PRECONDITION.withDescription("etcdserver: lease already exists").asRuntimeException();
+        }
+
+        leases.put(id, new LeaseEntry(id, ttl));
+
+        return id;
+    }
+
+    synchronized void revoke(long id) {
+        final LeaseEntry lease = leases.remove(id);
+        if (lease == null) {
+            throw Status.NOT_FOUND.withDescription("etcdserver: requested lease not found").asRuntimeException();
+        }
+
+        final List<Event> changes = new ArrayList<>();
+        for (ByteString key : new ArrayList<>(lease.keys)) {
+            delete(key, revision + 1, changes);
+        }
+
+        commit(changes);
+    }
+
+    /**
+     * @return the TTL of the lease, or 0 if the lease does not exist
+     */
+    synchronized long keepAlive(long id) {
+        final LeaseEntry lease = leases.get(id);
+        if (lease == null) {
+            return 0;
+        }
+
+        lease.refresh();
+
+        return lease.ttl;
+    }
+
+    /**
+     * @return the lease, or null if it does not exist
+     */
+    synchronized LeaseEntry lease(long id) {
+        return leases.get(id);
+    }
+
+    /**
+     * Revokes the leases that expired.
+     */
+    synchronized void expire() {
+        final long now = System.nanoTime();
+
+        for (LeaseEntry lease : new ArrayList<>(leases.values())) {
+            if (now - lease.deadline >= 0) {
+                revoke(lease.id);
+            }
+        }
+    }
+
+    // **********************************
+    // Helpers
+    // **********************************
+
+    /**
+     * @param current the revision to read at when the request does not ask for
+     *                one, in a txn it includes the writes of the txn itself
+     */
+    private RangeResponse range(RangeRequest request, long current) {
+        final long rev = request.getRevision() > 0 ? request.getRevision() : current;
+
+        if (rev > current) {
+            throw Status.OUT_OF_RANGE.withDescription("etcdserver: mvcc: required revision is a future revision").asRuntimeException();
+        }
+        if (rev < compacted) {
+            throw Status.OUT_OF_RANGE.withDescription("etcdserver: mvcc: required revision has been compacted").asRuntimeException();
+        }
+
+        final RangeResponse.Builder response = RangeResponse.newBuilder();
+        final List<KeyValue> kvs = new ArrayList<>();
+
+        for (List<KeyValue> versions : select(request.getKey(), request.getRangeEnd()).values()) {
+            final KeyValue kv = at(versions, rev);
+
+            if (kv == null || !matches(kv, request)) {
+                continue;
+            }
+
+            kvs.add(kv);
+        }
+
+        if (request.getSortOrder() == RangeRequest.SortOrder.DESCEND) {
+            Collections.reverse(kvs);
+        }
+
+        response.setCount(kvs.size());
+
+        if (!request.getCountOnly()) {
+            final int limit = request.getLimit() > 0 ? (int)Math.min(request.getLimit(), kvs.size()) : kvs.size();
+
+            for (int i = 0; i < limit; i++) {
+                response.addKvs(request.getKeysOnly() ? kvs.get(i).toBuilder().clearValue().build() : kvs.get(i));
+            }
+
+            response.setMore(limit < kvs.size());
+        }
+
+        return response.setHeader(header()).build();
+    }
+
+    private void check(PutRequest request) {
+        final List<KeyValue> versions = keys.get(request.getKey());
+        final KeyValue prev = versions != null ? current(versions) : null;
+
+        if ((request.getIgnoreValue() || request.getIgnoreLease()) && prev == null) {
+            throw Status.NOT_FOUND.withDescription("etcdserver: key not found").asRuntimeException();
+        }
+
+        final long lease = request.getIgnoreLease() ? prev.getLease() : request.getLease();
+        if (lease != 0 && !leases.containsKey(lease)) {
+            throw Status.NOT_FOUND.withDescription("etcdserver: requested lease not found").asRuntimeException();
+        }
+    }
+
+    private PutResponse put(PutRequest request, long rev, List<Event> changes) {
+        check(request);
+
+        final List<KeyValue> versions = keys.get(request.getKey());
+        final KeyValue prev = versions != null ? current(versions) : null;
+        final long lease = request.getIgnoreLease() ? prev.getLease() : request.getLease();
+
+        final KeyValue kv = KeyValue.newBuilder()
+            .setKey(request.getKey())
+            .setValue(request.getIgnoreValue() ? prev.getValue() : request.getValue())
+            .setLease(lease)
+            .setCreateRevision(prev != null ? prev.getCreateRevision() : rev)
+            .setModRevision(rev)
+            .setVersion(prev != null ? prev.getVersion() + 1 : 1)
+            .build();
+
+        if (prev != null && prev.getLease() != 0 && prev.getLease() != lease) {
+            detach(prev);
+        }
+        if (lease != 0) {
+            leases.get(lease).keys.add(kv.getKey());
+        }
+
+        keys.computeIfAbsent(kv.getKey(), k -> new ArrayList<>()).add(kv);
+
+        final Event.Builder event = Event.newBuilder().setType(Event.EventType.PUT).setKv(kv);
+        if (prev != null) {
+            event.setPrevKv(prev);
+        }
+
+        changes.add(event.build());
+
+        final PutResponse.Builder response = PutResponse.newBuilder();
+        if (request.getPrevKv() && prev != null) {
+            response.setPrevKv(prev);
+        }
+
+        return response.build();
+    }
+
+    private DeleteRangeResponse deleteRange(DeleteRangeRequest request, long rev, List<Event> changes) {
+        final DeleteRangeResponse.Builder response = DeleteRangeResponse.newBuilder();
+
+        for (ByteString key : new ArrayList<>(select(request.getKey(), request.getRangeEnd()).keySet())) {
+            final KeyValue prev = delete(key, rev, changes);
+
+            if (prev != null) {
+                response.setDeleted(response.getDeleted() + 1);
+
+                if (request.getPrevKv()) {
+                    response.addPrevKvs(prev);
+                }
+            }
+        }
+
+        return response.build();
+    }
+
+    private KeyValue delete(ByteString key, long rev, List<Event> changes) {
+        final List<KeyValue> versions = keys.get(key);
+        final KeyValue prev = versions != null ? current(versions) : null;
+
+        if (prev == null) {
+            return null;
+        }
+
+        detach(prev);
+
+        final KeyValue tombstone = KeyValue.newBuilder()
+            .setKey(key)
+            .setModRevision(rev)
+            .build();
+
+        versions.add(tombstone);
+
+        changes.add(
+            Event.newBuilder()
+                .setType(Event.EventType.DELETE)
+                .setKv(tombstone)
+                .setPrevKv(prev)
+                .build()
+        );
+
+        return prev;
+    }
+
+    private void detach(KeyValue kv) {
+        final LeaseEntry lease = leases.get(kv.getLease());
+        if (lease != null) {
+            lease.keys.remove(kv.getKey());
+        }
+    }
+
+    private void commit(List<Event> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        revision++;
+        events.addAll(changes);
+
+        for (Watcher watcher : watchers) {
+            watcher.notify(changes);
+        }
+    }
+
+    private boolean compare(Compare compare) {
+        final Collection<List<KeyValue>> selected = compare.getRangeEnd().isEmpty()
+            ? Collections.singletonList(keys.getOrDefault(compare.getKey(), Collections.emptyList()))
+            : select(compare.getKey(), compare.getRangeEnd()).values();
+
+        for (List<KeyValue> versions : selected) {
+            final KeyValue kv = current(versions);
+
+            final int result;
+            switch (compare.getTarget()) {
+            case VERSION:
+                result = Long.compare(kv != null ? kv.getVersion() : 0, compare.getVersion());
+                break;
+            case CREATE:
+                result = Long.compare(kv != null ? kv.getCreateRevision() : 0, compare.getCreateRevision());
+                break;
+            case MOD:
+                result = Long.compare(kv != null ? kv.getModRevision() : 0, compare.getModRevision());
+                break;
+            case LEASE:
+                result = Long.compare(kv != null ? kv.getLease() : 0, compare.getLease());
+                break;
+            case VALUE:
+                if (kv == null) {
+                    return false;
+                }
+                result = ByteStrings.compare(kv.getValue(), compare.getValue());
+                break;
+            default:
+                return false;
+            }
+
+            final boolean matches;
+            switch (compare.getResult()) {
+            case EQUAL:
+                matches = result == 0;
+                break;
+            case NOT_EQUAL:
+                matches = result != 0;
+                break;
+            case GREATER:
+                matches = result > 0;
+                break;
+            case LESS:
+                matches = result < 0;
+                break;
+            default:
+                matches = false;
+                break;
+            }
+
+            if (!matches) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private NavigableMap<ByteString, List<KeyValue>> select(ByteString key, ByteString rangeEnd) {
+        if (rangeEnd.isEmpty()) {
+            return keys.containsKey(key)
+                ? keys.subMap(key, true, key, true)
+                : Collections.emptyNavigableMap();
+        }
+        if (ByteStrings.ALL_KEYS.equals(rangeEnd)) {
+            return keys.tailMap(key, true);
+        }
+        if (ByteStrings.compare(key, rangeEnd) >= 0) {
+            return Collections.emptyNavigableMap();
+        }
+
+        return keys.subMap(key, true, rangeEnd, false);
+    }
+
+    private static boolean matches(KeyValue kv, RangeRequest request) {
+        return (request.getMinModRevision() == 0 || kv.getModRevision() >= request.getMinModRevision())
+            && (request.getMaxModRevision() == 0 || kv.getModRevision() <= request.getMaxModRevision())
+            && (request.getMinCreateRevision() == 0 || kv.getCreateRevision() >= request.getMinCreateRevision())
+            && (request.getMaxCreateRevision() == 0 || kv.getCreateRevision() <= request.getMaxCreateRevision());
+    }
+
+    private static KeyValue current(List<KeyValue> versions) {
+        if (versions.isEmpty()) {
+            return null;
+        }
+
+        final KeyValue kv = versions.get(versions.size() - 1);
+        return isTombstone(kv) ? null : kv;
+    }
+
+    private static KeyValue at(List<KeyValue> versions, long rev) {
+        for (int i = versions.size() - 1; i >= 0; i--) {
+            final KeyValue kv = versions.get(i);
+            if (kv.getModRevision() <= rev) {
+                return isTombstone(kv) ? null : kv;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean isTombstone(KeyValue kv) {
+        return kv.getVersion() == 0;
+    }
+
+    // **********************************
+    // Watcher
+    // **********************************
+
+    static final class Watcher {
+        private final WatchCreateRequest request;
+        private final Consumer<List<Event>> listener;
+
+        private Watcher(WatchCreateRequest request, Consumer<List<Event>> listener) {
+            this.request = request;
+            this.listener = listener;
+        }
+
+        private void notify(List<Event> events) {
+            final List<Event> selected = new ArrayList<>();
+
+            for (Event event : events) {
+                if (!selects(event)) {
+                    continue;
+                }
+
+                selected.add(request.getPrevKv() ? event : event.toBuilder().clearPrevKv().build());
+            }
+
+            if (!selected.isEmpty()) {
+                listener.accept(selected);
+            }
+        }
+
+        private boolean selects(Event event) {
+            final ByteString key = event.getKv().getKey();
+            final boolean inRange = request.getRangeEnd().isEmpty()
+                ? key.equals(request.getKey())
+                : ByteStrings.inRange(key, request.getKey(), request.getRangeEnd());
+
+            if (!inRange) {
+                return false;
+            }
+
+            switch (event.getType()) {
+            case PUT:
+                return !request.getFiltersList().contains(WatchCreateRequest.FilterType.NOPUT);
+            case DELETE:
+                return !request.getFiltersList().contains(WatchCreateRequest.FilterType.NODELETE);
+            default:
+                return false;
+            }
+        }
+    }
+
+    // **********************************
+    // Lease
+    // **********************************
+
+    static final class LeaseEntry {
+        final long id;
+        final long ttl;
+        final Set<ByteString> keys;
+        long deadline;
+
+        private LeaseEntry(long id, long ttl) {
+            this.id = id;
+            this.ttl = ttl;
+            this.keys = new HashSet<>();
+
+            refresh();
+        }
+
+        long remaining() {
+            return Math.max(0, TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime()));
+        }
+
+        private void refresh() {
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl);
+        }
+    }
+}
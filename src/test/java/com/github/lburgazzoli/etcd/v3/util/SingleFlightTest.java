@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.etcd.v3.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SingleFlightTest {
+    @Test
+    public void testSharedCall() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> call = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> f1 = singleFlight.execute("key", () -> { calls.incrementAndGet(); return call; });
+        CompletableFuture<String> f2 = singleFlight.execute("key", () -> { calls.incrementAndGet(); return call; });
+        CompletableFuture<String> f3 = singleFlight.execute("other", () -> { calls.incrementAndGet(); return CompletableFuture.completedFuture("other"); });
+
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals(1, singleFlight.size());
+        Assert.assertEquals("other", f3.get());
+
+        f1.cancel(false);
+        call.complete("value");
+
+        Assert.assertTrue(f1.isCancelled());
+        Assert.assertEquals("value", f2.get());
+        Assert.assertEquals(0, singleFlight.size());
+
+        singleFlight.execute("key", () -> { calls.incrementAndGet(); return call; });
+        Assert.assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> call = new CompletableFuture<>();
+
+        CompletableFuture<String> f1 = singleFlight.execute("key", () -> call);
+        CompletableFuture<String> f2 = singleFlight.execute("key", () -> call);
+
+        f1.cancel(false);
+        Assert.assertFalse(call.isCancelled());
+
+        // the shared call is cancelled with its last caller
+        f2.cancel(false);
+        Assert.assertTrue(call.isCancelled());
+        Assert.assertEquals(0, singleFlight.size());
+
+        // and a new caller starts a new call
+        CompletableFuture<String> next = new CompletableFuture<>();
+        CompletableFuture<String> f3 = singleFlight.execute("key", () -> next);
+        next.complete("value");
+        Assert.assertEquals("value", f3.get());
+    }
+}